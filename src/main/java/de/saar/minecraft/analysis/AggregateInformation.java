@@ -3,15 +3,13 @@ package de.saar.minecraft.analysis;
 import static java.lang.Integer.max;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.math3.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,6 +19,13 @@ public class AggregateInformation {
 
     boolean skipHLOAnalysis = false;
 
+    private AggregateStatistics statistics = null;
+    /**
+     * Guards statistics, a lock instead of a monitor as computing them may load games from the
+     * source, see GameInformation.
+     */
+    private final ReentrantLock statisticsLock = new ReentrantLock();
+
     public AggregateInformation(List<GameInformation> games, boolean skipHLOAnalysis) {
         this.games = games;
         this.skipHLOAnalysis = skipHLOAnalysis;
@@ -56,20 +61,7 @@ public class AggregateInformation {
                     + "matching games.");
             return;
         }
-        int maxInstructionDurationsSize = 0;
-        for (var g : games) {
-            if (g.instructionDurations == null) {
-                g.getDurationPerInstruction();
-            }
-            maxInstructionDurationsSize = max(g.instructionDurations.size(), maxInstructionDurationsSize);
-        }
-        var sep = ",";
-        FileWriter writer = new FileWriter(file);
-        writer.write(games.get(0).getCSVHeader(sep, maxInstructionDurationsSize));
-        for (var g : games) {
-            writer.write(g.getCSVLine(sep, maxInstructionDurationsSize));
-        }
-        writer.close();
+        Files.writeString(file.toPath(), renderCSV());
     }
 
     /**
@@ -96,8 +88,24 @@ public class AggregateInformation {
                     + "matching games.");
             return;
         }
+        Files.writeString(file.toPath(), renderCSV(startID, endID));
+    }
+
+    /**
+     * @return the content of the csv file written by saveCSV(file), the list of games must not
+     *     be empty
+     */
+    public String renderCSV() {
+        return CsvFragment.of(games).render();
+    }
+
+    /**
+     * @return the content of the csv file written by saveCSV(file, startID, endID), the list
+     *     of games must not be empty
+     */
+    public String renderCSV(int startID, int endID) {
         var sep = ",";
-        FileWriter writer = new FileWriter(file);
+        StringBuilder writer = new StringBuilder();
         int maxInstructionDurationsSize = 0;
         for (int id = startID; id <= endID; id++) {
             int finalId = id;
@@ -110,16 +118,31 @@ public class AggregateInformation {
             }
             maxInstructionDurationsSize = max(g.instructionDurations.size(), maxInstructionDurationsSize);
         }
-        writer.write(games.get(0).getCSVHeader(sep, maxInstructionDurationsSize));
+        writer.append(games.get(0).getCSVHeader(sep, maxInstructionDurationsSize));
         for (int id = startID; id <= endID; id++) {
             int finalId = id;
             var g = games.stream().filter((x) -> finalId == x.gameId).findFirst().orElse(null);
             if (g == null) {
                 continue;
             }
-            writer.write(g.getCSVLine(sep, maxInstructionDurationsSize));
+            writer.append(g.getCSVLine(sep, maxInstructionDurationsSize));
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @return the statistics the aggregate analysis is rendered from, computed on first use
+     */
+    public AggregateStatistics getStatistics() {
+        statisticsLock.lock();
+        try {
+            if (statistics == null) {
+                statistics = AggregateStatistics.of(games, skipHLOAnalysis);
+            }
+            return statistics;
+        } finally {
+            statisticsLock.unlock();
         }
-        writer.close();
     }
 
     /**
@@ -133,73 +156,42 @@ public class AggregateInformation {
      * @return averaged game duration of all games
      */
     public float getAverageGameDuration() {
-        List<Long> durations = new ArrayList<>();
-        for (GameInformation info : games) {
-            if (info.wasSuccessful()) {
-                durations.add(info.getTimeToSuccess());
-            }
-        }
-        float sum = (float) durations.stream().reduce((long) 0, Long::sum);
-        return sum / durations.size();
+        return getStatistics().getAverageGameDuration();
     }
 
     /**
      * @return fraction of successfully finished games
      */
     public float getFractionSuccessfulGames() {
-        int numSuccessFull = 0;
-        for (GameInformation info : games) {
-            if (info.wasSuccessful()) {
-                numSuccessFull++;
-            }
-        }
-        return (float) numSuccessFull / games.size();
+        return getStatistics().getFractionSuccessfulGames();
     }
 
     /**
      * @return averaged number of mistakes of all games
      */
     public float getAverageNumMistakes() {
-        int totalMistakes = 0;
-        for (GameInformation info : games) {
-            totalMistakes += info.getNumMistakes();
-        }
-        return (float) totalMistakes / games.size();
+        return getStatistics().getAverageNumMistakes();
     }
 
     /**
      * @return averaged number of blocks placed of all games
      */
     public float getAverageNumBlocksPlaced() {
-        int totalBlocks = 0;
-        for (GameInformation info : games) {
-            totalBlocks += info.getNumBlocksPlaced();
-        }
-        return (float) totalBlocks / games.size();
+        return getStatistics().getAverageNumBlocksPlaced();
     }
 
     /**
      * @return averaged number of blocks destroyed of all games
      */
     public float getAverageNumBlocksDestroyed() {
-        int totalBlocks = 0;
-        for (GameInformation info : games) {
-            totalBlocks += info.getNumBlocksDestroyed();
-        }
-        return (float) totalBlocks / games.size();
+        return getStatistics().getAverageNumBlocksDestroyed();
     }
 
     /**
      * @return fraction of players that made at least one mistake
      */
     public float getFractionMistakes() {
-        int withMistakes = 0;
-        for (GameInformation info : games) {
-            if (info.getNumMistakes() > 0) {
-                withMistakes++;
-            }
-        }
-        return (float) withMistakes / games.size();
+        return getStatistics().getFractionMistakes();
     }
 
     /**
@@ -207,12 +199,15 @@ public class AggregateInformation {
      *     amount as values
      */
     public Map<Integer, Integer> getMistakeDistribution() {
-        TreeMap<Integer, Integer> distribution = new TreeMap<>();
-        for (GameInformation info : games) {
-            int mistakes = info.getNumMistakes();
-            distribution.put(mistakes, distribution.getOrDefault(mistakes, 0) + 1);
-        }
-        return distribution;
+        return getStatistics().getMistakeDistribution();
+    }
+
+    /**
+     * @return a histogram of the answers for each Likert question, histograms of different
+     *     AggregateInformations can be combined with LikertHistogram.merge
+     */
+    public HashMap<String, LikertHistogram> getAnswerHistograms() {
+        return getStatistics().getAnswerHistograms();
     }
 
     /**
@@ -222,28 +217,19 @@ public class AggregateInformation {
      * @return a list with the values above for each question
      */
     public List<Answer> getAnswerDistribution() {
-        HashMap<String, DescriptiveStatistics> collection = new HashMap<>();
-
-        for (GameInformation info : games) {
-            // collect
-            for (Pair<String, Integer> qa : info.getNumericQuestions()) {
-                // only include numeric answers
-                collection.putIfAbsent(qa.getFirst(), new DescriptiveStatistics());
-                collection.get(qa.getFirst()).addValue(qa.getSecond());
-            }
-        }
+        return getAnswerDistribution(getAnswerHistograms());
+    }
 
-        // compute distribution
+    /**
+     * computes answer distributions from already collected histograms.
+     */
+    public static List<Answer> getAnswerDistribution(Map<String, LikertHistogram> histograms) {
         List<Answer> distribution = new ArrayList<>();
-        for (String question : collection.keySet()) {
-
-            DescriptiveStatistics statistics = collection.get(question);
-            double mean = statistics.getGeometricMean();
-            double stdDeviation = statistics.getStandardDeviation();
-            int median = (int) statistics.getPercentile(50);
-            int minimum = (int) statistics.getMin();
-            int maximum = (int) statistics.getMax();
-            distribution.add(new Answer(question, mean, stdDeviation, median, minimum, maximum));
+        for (Map.Entry<String, LikertHistogram> entry : histograms.entrySet()) {
+            LikertHistogram histogram = entry.getValue();
+            distribution.add(new Answer(entry.getKey(), histogram.getMean(),
+                    histogram.getStandardDeviation(), histogram.getMedian(),
+                    histogram.getMinimum(), histogram.getMaximum()));
         }
         return distribution;
     }
@@ -253,18 +239,7 @@ public class AggregateInformation {
      *     as values
      */
     public HashMap<String, List<String>> getAllFreeTextResponses() {
-        HashMap<String, List<String>> collection = new HashMap<>();
-        for (GameInformation info : games) {
-            for (Pair<String, String> qa : info.getFreeformQuestions()) {
-                var question = qa.getFirst();
-                var answer = qa.getSecond();
-                collection.putIfAbsent(question, new ArrayList<>());
-                if (!answer.isEmpty()) {
-                    collection.get(question).add(answer);
-                }
-            }
-        }
-        return collection;
+        return getStatistics().getAllFreeTextResponses();
     }
 
     /**
@@ -274,43 +249,7 @@ public class AggregateInformation {
      *     building them
      */
     public List<Pair<String, Integer>> getAverageDurationPerHLO() {
-        if (skipHLOAnalysis) {
-            return null;
-        }
-        List<Pair<String, List<Integer>>> addedDurations = new ArrayList<>();
-        for (GameInformation info : games) {
-            if (!info.wasSuccessful()) {
-                continue;
-            }
-            List<Pair<String, GameInformation.HLOInformation>> current;
-            if (info.hloInformation == null) {
-                current = info.getHLOInformation();
-                info.hloInformation = current;
-            } else {
-                current = info.hloInformation;
-            }
-            if (addedDurations.isEmpty()) {
-                addedDurations = current.stream()
-                        .map((x -> new Pair<String, List<Integer>>(x.getFirst(), new ArrayList<>())))
-                        .collect(Collectors.toList());
-            }
-            for (int i = 0; i < current.size(); i++) {
-                String objectName = current.get(i).getFirst();
-                int newDuration = current.get(i).getSecond().duration;
-                if (!addedDurations.get(i).getFirst().equals(objectName)) {
-                    logger.error("wrong high-level object, is: "
-                            + addedDurations.get(i).getFirst() + " expected: " + objectName);
-                    throw new RuntimeException("HLO mismatch");
-                }
-                var durations = addedDurations.get(i).getSecond();
-                durations.add(newDuration);
-            }
-        }
-        return addedDurations.stream()
-                .map((x) -> new Pair<>(
-                        x.getFirst(),
-                        (x.getSecond().stream().reduce(0, Integer::sum)) / x.getSecond().size()))
-                .collect(Collectors.toList());
+        return getStatistics().getAverageDurationPerHLO();
     }
 
     /**
@@ -320,77 +259,14 @@ public class AggregateInformation {
      * @throws IOException if it cannot write to the provided file
      */
     public void writeAnalysis(File file) throws IOException {
-        FileWriter writer = new FileWriter(file);
-
-        String overview = "# Overview" + "\n - Number of games: "
-                + getNumGames()
-                + "\n - Average game duration: "
-                + getAverageGameDuration()
-                + "\n - Fraction of successful games: "
-                + getFractionSuccessfulGames()
-                + "\n - Fraction of players making a mistake: "
-                + getFractionMistakes()
-                + "\n - Average number of mistakes: "
-                + getAverageNumMistakes()
-                + "\n - Average number of blocks placed: "
-                + getAverageNumBlocksPlaced()
-                + "\n - Average number of blocks destroyed: "
-                + getAverageNumBlocksDestroyed()
-                + "\n\n";
-        writer.write(overview);
-
-        StringBuilder gameList = new StringBuilder("\n# Games in this category\n");
-        for (GameInformation gi : games) {
-            gameList.append(gi.gameId).append(", ");
-        }
-        writer.write(gameList.toString());
-
-        StringBuilder likert = new StringBuilder("\n\n# Likert Questions\n");
-
-        likert.append("| Question | Mean | Standard Deviation | Median | Minimum | Maximum |\n");
-        likert.append("| -------- | ----:| ------------------:| ------:| -------:| -------:|\n");
-        for (Answer answer : getAnswerDistribution()) {
-            likert.append(String.format("%s | %.2f | %.2f | %d | %d | %d |\n",
-                    answer.getQuestion(),
-                    answer.getMean(),
-                    answer.getStdDeviation(),
-                    answer.getMedian(),
-                    answer.getMinimum(),
-                    answer.getMaximum()));
-        }
-        writer.write(likert.toString());
-        StringBuilder free = new StringBuilder("\n\n# Free-form Questions");
-        for (Map.Entry<String, List<String>> entry : getAllFreeTextResponses().entrySet()) {
-            String question = entry.getKey();
-            List<String> answers = entry.getValue();
-            free.append("\n### ").append(question);
-            for (String answer : answers) {
-                free.append("\n - ").append(answer);
-            }
-        }
-        writer.write(free.toString());
-        writer.flush();
-        StringBuilder hloDurations = new StringBuilder("\n\n# Average Duration per HLO");
-        var durations = getAverageDurationPerHLO();
-        if (durations == null) {
-            hloDurations.append("\n Not applicable");
-        } else {
-            for (var duration : durations) {
-                hloDurations.append("\n - ").append(duration.getFirst());
-                hloDurations.append(": ").append(duration.getSecond());
-            }
-        }
-        writer.write(hloDurations.toString());
-
-        StringBuilder mistakes = new StringBuilder("\n\n# Mistake distribution");
-        for (Map.Entry<Integer, Integer> entry : getMistakeDistribution().entrySet()) {
-            mistakes.append("\n");
-            mistakes.append(entry.getKey());
-            mistakes.append(": ");
-            mistakes.append(entry.getValue());
-        }
-        writer.write(mistakes.toString());
-        writer.close();
+        Files.writeString(file.toPath(), renderAnalysis());
+    }
+
+    /**
+     * @return the aggregate analysis as markdown, see writeAnalysis
+     */
+    public String renderAnalysis() {
+        return getStatistics().renderAnalysis();
     }
 
     /**
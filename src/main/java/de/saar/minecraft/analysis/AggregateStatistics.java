@@ -0,0 +1,382 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.apache.commons.math3.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The sums, counts and histograms an aggregate analysis is rendered from.  Unlike the list of
+ * games in AggregateInformation, the statistics of disjoint groups of games can be merged into
+ * the statistics of their union, so the shards of a sharded analysis only exchange these.
+ */
+public class AggregateStatistics {
+    private static final Logger logger = LogManager.getLogger(AggregateStatistics.class);
+
+    /**
+     * A questionnaire question with the game and position where it was first asked, which
+     * gives the order the questions are listed in.
+     */
+    private static class Question {
+        String text;
+        int firstGameId;
+        int position;
+
+        Question(String text, int firstGameId, int position) {
+            this.text = text;
+            this.firstGameId = firstGameId;
+            this.position = position;
+        }
+    }
+
+    private static class LikertQuestion extends Question {
+        LikertHistogram histogram = new LikertHistogram();
+
+        LikertQuestion(String text, int firstGameId, int position) {
+            super(text, firstGameId, position);
+        }
+    }
+
+    private static class FreeTextQuestion extends Question {
+        List<Integer> gameIds = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+
+        FreeTextQuestion(String text, int firstGameId, int position) {
+            super(text, firstGameId, position);
+        }
+    }
+
+    private static class HLODuration {
+        String name;
+        long sum;
+        int count;
+
+        HLODuration(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final Comparator<Question> QUESTION_ORDER = Comparator
+            .comparingInt((Question question) -> question.firstGameId)
+            .thenComparingInt((question) -> question.position);
+
+    private boolean skipHLOAnalysis;
+    private List<Integer> gameIds = new ArrayList<>();
+    private int numSuccessful = 0;
+    private long successDurationSum = 0;
+    private long totalMistakes = 0;
+    private long totalBlocksPlaced = 0;
+    private long totalBlocksDestroyed = 0;
+    private int gamesWithMistakes = 0;
+    private TreeMap<Integer, Integer> mistakeDistribution = new TreeMap<>();
+    private List<LikertQuestion> likertQuestions = new ArrayList<>();
+    private List<FreeTextQuestion> freeTextQuestions = new ArrayList<>();
+    private List<HLODuration> hloDurations = new ArrayList<>();
+
+    /**
+     * Goes through the games once and collects everything renderAnalysis() needs.
+     */
+    public static AggregateStatistics of(List<GameInformation> games, boolean skipHLOAnalysis) {
+        var statistics = new AggregateStatistics();
+        statistics.skipHLOAnalysis = skipHLOAnalysis;
+        Map<String, LikertQuestion> likert = new LinkedHashMap<>();
+        Map<String, FreeTextQuestion> freeText = new LinkedHashMap<>();
+        for (GameInformation info : games) {
+            statistics.gameIds.add(info.gameId);
+            if (info.wasSuccessful()) {
+                statistics.numSuccessful++;
+                statistics.successDurationSum += info.getTimeToSuccess();
+            }
+            int mistakes = info.getNumMistakes();
+            statistics.totalMistakes += mistakes;
+            if (mistakes > 0) {
+                statistics.gamesWithMistakes++;
+            }
+            statistics.mistakeDistribution.merge(mistakes, 1, Integer::sum);
+            statistics.totalBlocksPlaced += info.getNumBlocksPlaced();
+            statistics.totalBlocksDestroyed += info.getNumBlocksDestroyed();
+
+            int position = 0;
+            for (Pair<String, Integer> qa : info.getNumericQuestions()) {
+                int p = position++;
+                likert.computeIfAbsent(qa.getFirst(), (q) -> new LikertQuestion(q, info.gameId, p))
+                        .histogram.add(qa.getSecond());
+            }
+            position = 0;
+            for (Pair<String, String> qa : info.getFreeformQuestions()) {
+                int p = position++;
+                var question = freeText.computeIfAbsent(qa.getFirst(),
+                    (q) -> new FreeTextQuestion(q, info.gameId, p));
+                if (!qa.getSecond().isEmpty()) {
+                    question.gameIds.add(info.gameId);
+                    question.answers.add(qa.getSecond());
+                }
+            }
+
+            if (!skipHLOAnalysis && info.wasSuccessful()) {
+                statistics.addHLOInformation(info.getHLOInformation().stream()
+                        .map((hlo) -> {
+                            var duration = new HLODuration(hlo.getFirst());
+                            duration.sum = hlo.getSecond().duration;
+                            duration.count = 1;
+                            return duration;
+                        })
+                        .collect(Collectors.toList()));
+            }
+        }
+        statistics.likertQuestions.addAll(likert.values());
+        statistics.freeTextQuestions.addAll(freeText.values());
+        return statistics;
+    }
+
+    /**
+     * Adds the HLO durations of a game or a group of games.  All games must have the same
+     * high-level objects in the same order.
+     */
+    private void addHLOInformation(List<HLODuration> other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        if (hloDurations.isEmpty()) {
+            hloDurations = other.stream()
+                    .map((x) -> new HLODuration(x.name))
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < other.size(); i++) {
+            String objectName = other.get(i).name;
+            if (!hloDurations.get(i).name.equals(objectName)) {
+                logger.error("wrong high-level object, is: "
+                        + hloDurations.get(i).name + " expected: " + objectName);
+                throw new RuntimeException("HLO mismatch");
+            }
+            hloDurations.get(i).sum += other.get(i).sum;
+            hloDurations.get(i).count += other.get(i).count;
+        }
+    }
+
+    /**
+     * Adds the statistics of the other group of games, which must not share games with this
+     * group, to these statistics.  The result is the same as if the statistics were computed
+     * from the games of both groups ordered by game ID.
+     */
+    public AggregateStatistics merge(AggregateStatistics other) {
+        gameIds.addAll(other.gameIds);
+        gameIds.sort(Comparator.naturalOrder());
+        numSuccessful += other.numSuccessful;
+        successDurationSum += other.successDurationSum;
+        totalMistakes += other.totalMistakes;
+        totalBlocksPlaced += other.totalBlocksPlaced;
+        totalBlocksDestroyed += other.totalBlocksDestroyed;
+        gamesWithMistakes += other.gamesWithMistakes;
+        other.mistakeDistribution.forEach((mistakes, count) -> {
+            mistakeDistribution.merge(mistakes, count, Integer::sum);
+        });
+
+        Map<String, LikertQuestion> likert = new HashMap<>();
+        for (LikertQuestion question : likertQuestions) {
+            likert.put(question.text, question);
+        }
+        for (LikertQuestion question : other.likertQuestions) {
+            var existing = likert.putIfAbsent(question.text, question);
+            if (existing == null) {
+                likertQuestions.add(question);
+            } else {
+                existing.histogram.merge(question.histogram);
+                firstAsked(existing, question);
+            }
+        }
+        likertQuestions.sort(QUESTION_ORDER);
+
+        Map<String, FreeTextQuestion> freeText = new HashMap<>();
+        for (FreeTextQuestion question : freeTextQuestions) {
+            freeText.put(question.text, question);
+        }
+        for (FreeTextQuestion question : other.freeTextQuestions) {
+            var existing = freeText.putIfAbsent(question.text, question);
+            if (existing == null) {
+                freeTextQuestions.add(question);
+            } else {
+                mergeAnswers(existing, question);
+                firstAsked(existing, question);
+            }
+        }
+        freeTextQuestions.sort(QUESTION_ORDER);
+
+        addHLOInformation(other.hloDurations);
+        return this;
+    }
+
+    private static void firstAsked(Question question, Question other) {
+        if (QUESTION_ORDER.compare(other, question) < 0) {
+            question.firstGameId = other.firstGameId;
+            question.position = other.position;
+        }
+    }
+
+    /**
+     * Adds the answers of the other question, keeping the answers in game ID order.
+     */
+    private static void mergeAnswers(FreeTextQuestion question, FreeTextQuestion other) {
+        List<Pair<Integer, String>> answers = new ArrayList<>();
+        for (int i = 0; i < question.answers.size(); i++) {
+            answers.add(new Pair<>(question.gameIds.get(i), question.answers.get(i)));
+        }
+        for (int i = 0; i < other.answers.size(); i++) {
+            answers.add(new Pair<>(other.gameIds.get(i), other.answers.get(i)));
+        }
+        answers.sort(Comparator.comparing(Pair::getFirst));
+        question.gameIds = answers.stream().map(Pair::getFirst).collect(Collectors.toList());
+        question.answers = answers.stream().map(Pair::getSecond).collect(Collectors.toList());
+    }
+
+    public int getNumGames() {
+        return gameIds.size();
+    }
+
+    public List<Integer> getGameIds() {
+        return gameIds;
+    }
+
+    public float getAverageGameDuration() {
+        return (float) successDurationSum / numSuccessful;
+    }
+
+    public float getFractionSuccessfulGames() {
+        return (float) numSuccessful / getNumGames();
+    }
+
+    public float getAverageNumMistakes() {
+        return (float) totalMistakes / getNumGames();
+    }
+
+    public float getAverageNumBlocksPlaced() {
+        return (float) totalBlocksPlaced / getNumGames();
+    }
+
+    public float getAverageNumBlocksDestroyed() {
+        return (float) totalBlocksDestroyed / getNumGames();
+    }
+
+    public float getFractionMistakes() {
+        return (float) gamesWithMistakes / getNumGames();
+    }
+
+    public Map<Integer, Integer> getMistakeDistribution() {
+        return new TreeMap<>(mistakeDistribution);
+    }
+
+    /**
+     * @return a copy of the histogram of the answers for each Likert question
+     */
+    public HashMap<String, LikertHistogram> getAnswerHistograms() {
+        HashMap<String, LikertHistogram> collection = new HashMap<>();
+        for (LikertQuestion question : likertQuestions) {
+            collection.put(question.text, new LikertHistogram().merge(question.histogram));
+        }
+        return collection;
+    }
+
+    public HashMap<String, List<String>> getAllFreeTextResponses() {
+        HashMap<String, List<String>> collection = new HashMap<>();
+        for (FreeTextQuestion question : freeTextQuestions) {
+            collection.put(question.text, new ArrayList<>(question.answers));
+        }
+        return collection;
+    }
+
+    /**
+     * @return the high-level object names and the average duration in milliseconds for
+     *     building them, null if the HLO analysis is skipped
+     */
+    public List<Pair<String, Integer>> getAverageDurationPerHLO() {
+        if (skipHLOAnalysis) {
+            return null;
+        }
+        return hloDurations.stream()
+                .map((x) -> new Pair<>(x.name, (int) (x.sum / x.count)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the aggregate analysis as markdown, see AggregateInformation.writeAnalysis
+     */
+    public String renderAnalysis() {
+        StringBuilder writer = new StringBuilder();
+
+        String overview = "# Overview" + "\n - Number of games: "
+                + getNumGames()
+                + "\n - Average game duration: "
+                + getAverageGameDuration()
+                + "\n - Fraction of successful games: "
+                + getFractionSuccessfulGames()
+                + "\n - Fraction of players making a mistake: "
+                + getFractionMistakes()
+                + "\n - Average number of mistakes: "
+                + getAverageNumMistakes()
+                + "\n - Average number of blocks placed: "
+                + getAverageNumBlocksPlaced()
+                + "\n - Average number of blocks destroyed: "
+                + getAverageNumBlocksDestroyed()
+                + "\n\n";
+        writer.append(overview);
+
+        StringBuilder gameList = new StringBuilder("\n# Games in this category\n");
+        for (int gameId : gameIds) {
+            gameList.append(gameId).append(", ");
+        }
+        writer.append(gameList);
+
+        StringBuilder likert = new StringBuilder("\n\n# Likert Questions\n");
+
+        likert.append("| Question | Mean | Standard Deviation | Median | Minimum | Maximum |\n");
+        likert.append("| -------- | ----:| ------------------:| ------:| -------:| -------:|\n");
+        for (AggregateInformation.Answer answer : AggregateInformation.getAnswerDistribution(getAnswerHistograms())) {
+            likert.append(String.format("%s | %.2f | %.2f | %d | %d | %d |\n",
+                    answer.getQuestion(),
+                    answer.getMean(),
+                    answer.getStdDeviation(),
+                    answer.getMedian(),
+                    answer.getMinimum(),
+                    answer.getMaximum()));
+        }
+        writer.append(likert);
+        StringBuilder free = new StringBuilder("\n\n# Free-form Questions");
+        for (Map.Entry<String, List<String>> entry : getAllFreeTextResponses().entrySet()) {
+            String question = entry.getKey();
+            List<String> answers = entry.getValue();
+            free.append("\n### ").append(question);
+            for (String answer : answers) {
+                free.append("\n - ").append(answer);
+            }
+        }
+        writer.append(free);
+        StringBuilder hloDurations = new StringBuilder("\n\n# Average Duration per HLO");
+        var durations = getAverageDurationPerHLO();
+        if (durations == null) {
+            hloDurations.append("\n Not applicable");
+        } else {
+            for (var duration : durations) {
+                hloDurations.append("\n - ").append(duration.getFirst());
+                hloDurations.append(": ").append(duration.getSecond());
+            }
+        }
+        writer.append(hloDurations);
+
+        StringBuilder mistakes = new StringBuilder("\n\n# Mistake distribution");
+        for (Map.Entry<Integer, Integer> entry : getMistakeDistribution().entrySet()) {
+            mistakes.append("\n");
+            mistakes.append(entry.getKey());
+            mistakes.append(": ");
+            mistakes.append(entry.getValue());
+        }
+        writer.append(mistakes);
+        return writer.toString();
+    }
+}
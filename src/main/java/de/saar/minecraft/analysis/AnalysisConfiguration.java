@@ -1,6 +1,8 @@
 package de.saar.minecraft.analysis;
 
 import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
 
@@ -10,6 +12,21 @@ public class AnalysisConfiguration {
     private String user;
     private String password;
     private String dirName;
+    private String snapshot;
+    private boolean profileQueries = false;
+
+    // connection pool and statement options, see getJdbcUrl()
+    private int poolSize = 4;
+    private Integer fetchSize = null;
+    private boolean useServerPrepStmts = true;
+    private boolean cachePrepStmts = true;
+    private int prepStmtCacheSize = 250;
+    private boolean rewriteBatchedStatements = true;
+
+    private boolean virtualThreads = false;
+    private boolean pushDownSummary = false;
+    private boolean prefetchEvents = false;
+    private String shard = null;
 
     public static AnalysisConfiguration loadYaml(Reader reader) {
         Constructor constructor = new Constructor(AnalysisConfiguration.class);
@@ -33,6 +50,108 @@ public class AnalysisConfiguration {
         return dirName;
     }
 
+    /**
+     * @return path of a snapshot file to analyze instead of the database, null to use the database
+     */
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return true if every database query should be recorded by a QueryProfiler
+     */
+    public boolean isProfileQueries() {
+        return profileQueries;
+    }
+
+    /**
+     * @return the maximal number of database connections that are open at the same time
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the number of rows fetched from the database at once, null for the driver default
+     */
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public boolean isUseServerPrepStmts() {
+        return useServerPrepStmts;
+    }
+
+    public boolean isCachePrepStmts() {
+        return cachePrepStmts;
+    }
+
+    public int getPrepStmtCacheSize() {
+        return prepStmtCacheSize;
+    }
+
+    public boolean isRewriteBatchedStatements() {
+        return rewriteBatchedStatements;
+    }
+
+    /**
+     * @return true if the per-game analyses run on one virtual thread per game, with at most
+     *     poolSize of them querying the database at the same time
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return true if the block, mistake and success counters of all games are computed by
+     *     the data source at once, see GameLogSource.getSummaries()
+     */
+    public boolean isPushDownSummary() {
+        return pushDownSummary;
+    }
+
+    /**
+     * @return true if the logs of all games are loaded up front, see GameLogSource.extractEvents
+     */
+    public boolean isPrefetchEvents() {
+        return prefetchEvents;
+    }
+
+    /**
+     * @return the shard of the games this process analyzes as k/N, see Shard, or null to
+     *     analyze all games
+     */
+    public String getShard() {
+        return shard;
+    }
+
+    /**
+     * @return the configured url with the pool and statement options added as MariaDB
+     *     connection parameters.  Options that are already set in the url are not overridden.
+     */
+    public String getJdbcUrl() {
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("maxPoolSize", poolSize);
+        options.put("minPoolSize", 1);
+        options.put("useServerPrepStmts", useServerPrepStmts);
+        options.put("cachePrepStmts", cachePrepStmts);
+        options.put("prepStmtCacheSize", prepStmtCacheSize);
+        options.put("rewriteBatchedStatements", rewriteBatchedStatements);
+        if (fetchSize != null) {
+            options.put("defaultFetchSize", fetchSize);
+        }
+        StringBuilder result = new StringBuilder(url);
+        char separator = url.contains("?") ? '&' : '?';
+        for (Map.Entry<String, Object> option : options.entrySet()) {
+            if (url.contains(option.getKey() + "=")) {
+                continue;
+            }
+            result.append(separator).append(option.getKey()).append('=').append(option.getValue());
+            separator = '&';
+        }
+        return result.toString();
+    }
+
     public void setUrl(String url) {
         this.url = url;
     }
@@ -48,4 +167,52 @@ public class AnalysisConfiguration {
     public void setDirName(String dirName) {
         this.dirName = dirName;
     }
+
+    public void setSnapshot(String snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public void setProfileQueries(boolean profileQueries) {
+        this.profileQueries = profileQueries;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public void setUseServerPrepStmts(boolean useServerPrepStmts) {
+        this.useServerPrepStmts = useServerPrepStmts;
+    }
+
+    public void setCachePrepStmts(boolean cachePrepStmts) {
+        this.cachePrepStmts = cachePrepStmts;
+    }
+
+    public void setPrepStmtCacheSize(int prepStmtCacheSize) {
+        this.prepStmtCacheSize = prepStmtCacheSize;
+    }
+
+    public void setRewriteBatchedStatements(boolean rewriteBatchedStatements) {
+        this.rewriteBatchedStatements = rewriteBatchedStatements;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public void setPushDownSummary(boolean pushDownSummary) {
+        this.pushDownSummary = pushDownSummary;
+    }
+
+    public void setPrefetchEvents(boolean prefetchEvents) {
+        this.prefetchEvents = prefetchEvents;
+    }
+
+    public void setShard(String shard) {
+        this.shard = shard;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+package de.saar.minecraft.analysis;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings and counters of an analysis run: wall time per phase, time per game,
+ * database queries per kind, bytes written and cache hit rates.  The metrics are written as
+ * JSON with {@link #writeJson(Path)} so that runs on different experiment batches can be
+ * compared.  All methods can be called from several threads; the counters are LongAdders in
+ * concurrent maps, so threads recording queries or cache accesses do not wait for each other.
+ */
+public class AnalysisMetrics {
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Timing> phases = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> gameNanos = new ConcurrentHashMap<>();
+    private final Map<String, Timing> queries = new ConcurrentHashMap<>();
+    /** hits and misses of each cache */
+    private final Map<String, LongAdder[]> caches = new ConcurrentHashMap<>();
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile QueryProfiler queryProfiler = null;
+
+    /**
+     * How often something happened, how long it took in total and at most, and how many
+     * rows it returned.
+     */
+    private static class Timing {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder rows = new LongAdder();
+
+        void add(long nanos, long rows) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            this.rows.add(rows);
+        }
+
+        JsonObject toJson(boolean withRows) {
+            var json = new JsonObject();
+            json.addProperty("count", count.sum());
+            json.addProperty("totalMillis", totalNanos.sum() / 1_000_000.0);
+            json.addProperty("maxMillis", maxNanos.get() / 1_000_000.0);
+            if (withRows) {
+                json.addProperty("rows", rows.sum());
+            }
+            return json;
+        }
+    }
+
+    /**
+     * Measures the wall time of one phase until it is closed, use it with try-with-resources.
+     * Phases with the same name are summed up.
+     */
+    public class Phase implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            phases.computeIfAbsent(name, (n) -> new Timing()).add(nanos, 0);
+        }
+    }
+
+    public Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * @param nanos the time it took to analyze the game
+     */
+    public void recordGame(int gameId, long nanos) {
+        gameNanos.computeIfAbsent(gameId, (g) -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * @param kind what the query fetched, e.g. "gameLogs"
+     * @param nanos the time from sending the query until all rows were read
+     * @param rows the number of rows fetched
+     */
+    public void recordQuery(String kind, long nanos, long rows) {
+        queries.computeIfAbsent(kind, (k) -> new Timing()).add(nanos, rows);
+    }
+
+    /**
+     * Includes the query shapes recorded by the profiler in the metrics.
+     */
+    public void setQueryProfiler(QueryProfiler queryProfiler) {
+        this.queryProfiler = queryProfiler;
+    }
+
+    public void recordFileWritten(long bytes) {
+        filesWritten.increment();
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * @param cache the name of the cache
+     * @param hit true if the value was already there, false if it had to be computed
+     */
+    public void recordCacheAccess(String cache, boolean hit) {
+        caches.computeIfAbsent(cache, (c) -> new LongAdder[] {new LongAdder(), new LongAdder()})[hit ? 0 : 1]
+                .increment();
+    }
+
+    /**
+     * @return all metrics collected so far, in name order
+     */
+    public JsonObject toJson() {
+        var json = new JsonObject();
+        json.addProperty("startedAt", startedAt.toString());
+        json.addProperty("totalMillis", (System.nanoTime() - startNanos) / 1_000_000.0);
+
+        var phaseJson = new JsonObject();
+        new TreeMap<>(phases).forEach((name, timing) -> phaseJson.add(name, timing.toJson(false)));
+        json.add("phases", phaseJson);
+
+        var games = new JsonObject();
+        Map<Integer, Long> perGameNanos = new TreeMap<>();
+        gameNanos.forEach((id, nanos) -> perGameNanos.put(id, nanos.sum()));
+        long totalNanos = perGameNanos.values().stream().mapToLong(Long::longValue).sum();
+        long maxNanos = perGameNanos.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        games.addProperty("count", perGameNanos.size());
+        games.addProperty("totalMillis", totalNanos / 1_000_000.0);
+        games.addProperty("maxMillis", maxNanos / 1_000_000.0);
+        var perGame = new JsonObject();
+        perGameNanos.forEach((id, nanos) -> perGame.addProperty(String.valueOf(id), nanos / 1_000_000.0));
+        games.add("millisPerGame", perGame);
+        json.add("games", games);
+
+        var queryJson = new JsonObject();
+        long totalQueries = 0;
+        long totalRows = 0;
+        for (Map.Entry<String, Timing> entry : new TreeMap<>(queries).entrySet()) {
+            queryJson.add(entry.getKey(), entry.getValue().toJson(true));
+            totalQueries += entry.getValue().count.sum();
+            totalRows += entry.getValue().rows.sum();
+        }
+        var database = new JsonObject();
+        database.addProperty("queries", totalQueries);
+        database.addProperty("rowsFetched", totalRows);
+        database.add("perKind", queryJson);
+        QueryProfiler profiler = queryProfiler;
+        if (profiler != null) {
+            database.add("perShape", profiler.toJson());
+        }
+        json.add("database", database);
+
+        var output = new JsonObject();
+        output.addProperty("files", filesWritten.sum());
+        output.addProperty("bytes", bytesWritten.sum());
+        json.add("output", output);
+
+        var cacheJson = new JsonObject();
+        new TreeMap<>(caches).forEach((name, counts) -> {
+            long hits = counts[0].sum();
+            long misses = counts[1].sum();
+            var cache = new JsonObject();
+            cache.addProperty("hits", hits);
+            cache.addProperty("misses", misses);
+            cache.addProperty("hitRate", (double) hits / (hits + misses));
+            cacheJson.add(name, cache);
+        });
+        json.add("caches", cacheJson);
+        return json;
+    }
+
+    /**
+     * writes all metrics collected so far as JSON into the given file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(Path file) throws IOException {
+        try (FileWriter writer = new FileWriter(file.toFile())) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(toJson(), writer);
+        }
+    }
+}
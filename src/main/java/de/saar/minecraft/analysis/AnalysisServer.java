@@ -0,0 +1,278 @@
+package de.saar.minecraft.analysis;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Answers analysis requests over HTTP on localhost from an ExperimentAnalysis that stays in
+ * memory, so the games are loaded once instead of once per command.  The games do not change
+ * while the server runs, so answers are cached and repeated requests are not computed again.
+ * The cache is keyed by the parsed parameters an endpoint uses, so requests that only differ in
+ * the order or spelling of their parameters share an answer, and it keeps at most
+ * MAX_CACHED_CHARS characters, dropping the least recently used answers first.
+ *
+ * <p>GET /game?id=&lt;gameId&gt; returns the analysis of one game,
+ * GET /partial?scenario=&lt;scenario&gt;&amp;architect=&lt;architect&gt;&amp;onlySuccessful=&lt;true/false&gt;
+ * an aggregate analysis (scenario and architect may be left out),
+ * GET /csv[?from=&lt;gameId&gt;&amp;to=&lt;gameId&gt;] the content of data.csv,
+ * GET /metrics the metrics of the analysis so far and POST /shutdown stops the server.
+ *
+ * <p>Answers are small and the client waits for each of them, so the server should be created
+ * with the system property sun.net.httpserver.nodelay set to true: otherwise every answer waits
+ * for the delayed ACK of the client.  The property is read once when the first HttpServer is
+ * created, so Main sets it before anything else.</p>
+ */
+public class AnalysisServer {
+    private static final Logger logger = LogManager.getLogger(AnalysisServer.class);
+    static final long MAX_CACHED_CHARS = 64L << 20;
+
+    /**
+     * Parses the query parameters an endpoint uses into a canonical form, which is the key of
+     * the answer in the cache.
+     */
+    private interface Parameters {
+        /**
+         * @return the used parameters with normalized values, without the parameters that are left
+         *     out or not used
+         * @throws IllegalArgumentException if a parameter is missing or malformed
+         */
+        SortedMap<String, String> normalize(Map<String, String> query);
+    }
+
+    /**
+     * Computes the answer to a request from its normalized parameters.
+     */
+    private interface Request {
+        /**
+         * @return the answer, or null if the requested game or games do not exist
+         */
+        String answer(Map<String, String> parameters);
+    }
+
+    private final ExperimentAnalysis analysis;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * The cached answers in access order, guarded by their own lock.
+     */
+    private final LinkedHashMap<String, String> answers = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * @param port the port on localhost to listen on, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public AnalysisServer(ExperimentAnalysis analysis, int port) throws IOException {
+        this.analysis = analysis;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/game", handler("text/markdown", true, AnalysisServer::gameParameters, this::game));
+        server.createContext("/partial", handler("text/markdown", true, AnalysisServer::partialParameters,
+                this::partial));
+        server.createContext("/csv", handler("text/csv", true, AnalysisServer::csvParameters, this::csv));
+        server.createContext("/metrics", handler("application/json", false, (query) -> new TreeMap<>(),
+            (parameters) -> analysis.getMetrics().toJson().toString()));
+        server.createContext("/shutdown", (exchange) -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    send(exchange, 405, "text/plain", "Use POST to stop the server");
+                    return;
+                }
+                send(exchange, 200, "text/plain", "Stopping");
+            }
+            stop();
+        });
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Serving analyses at http://localhost:{}/", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops answering requests and lets awaitStop() return.
+     */
+    public void stop() {
+        // stopping waits for running exchanges, so it must not run on one of their threads
+        Thread.ofVirtual().start(() -> {
+            server.stop(1);
+            executor.shutdown();
+            stopped.countDown();
+        });
+    }
+
+    /**
+     * Waits until the server is stopped, e.g. by POST /shutdown.
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    private static SortedMap<String, String> gameParameters(Map<String, String> query) {
+        SortedMap<String, String> parameters = new TreeMap<>();
+        parameters.put("id", String.valueOf(intParameter(query, "id")));
+        return parameters;
+    }
+
+    private String game(Map<String, String> parameters) {
+        return analysis.renderGameAnalysis(Integer.parseInt(parameters.get("id")));
+    }
+
+    private static SortedMap<String, String> partialParameters(Map<String, String> query) {
+        SortedMap<String, String> parameters = new TreeMap<>();
+        for (String name : new String[] {"scenario", "architect"}) {
+            if (query.get(name) != null) {
+                parameters.put(name, query.get(name));
+            }
+        }
+        parameters.put("onlySuccessful", String.valueOf(Boolean.parseBoolean(query.get("onlySuccessful"))));
+        return parameters;
+    }
+
+    private String partial(Map<String, String> parameters) {
+        return analysis.renderPartialAnalysis(parameters.get("scenario"), parameters.get("architect"),
+                Boolean.parseBoolean(parameters.get("onlySuccessful")));
+    }
+
+    private static SortedMap<String, String> csvParameters(Map<String, String> query) {
+        SortedMap<String, String> parameters = new TreeMap<>();
+        if (query.containsKey("from") || query.containsKey("to")) {
+            parameters.put("from", String.valueOf(intParameter(query, "from")));
+            parameters.put("to", String.valueOf(intParameter(query, "to")));
+        }
+        return parameters;
+    }
+
+    private String csv(Map<String, String> parameters) {
+        if (parameters.containsKey("from")) {
+            return analysis.renderCSV(Integer.parseInt(parameters.get("from")),
+                    Integer.parseInt(parameters.get("to")));
+        }
+        return analysis.renderCSV();
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Parameter " + name + " is missing");
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * @param cached true if the answer is kept for repeated requests with the same query
+     */
+    private HttpHandler handler(String contentType, boolean cached, Parameters parameters, Request request) {
+        return (exchange) -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    send(exchange, 405, "text/plain", "Only GET is supported");
+                    return;
+                }
+                try {
+                    answer(exchange, contentType, cached, parameters, request);
+                } catch (IllegalArgumentException e) {
+                    send(exchange, 400, "text/plain", e.getMessage());
+                } catch (RuntimeException e) {
+                    logger.error("Could not answer " + exchange.getRequestURI(), e);
+                    send(exchange, 500, "text/plain", e.toString());
+                }
+            }
+        };
+    }
+
+    private void answer(HttpExchange exchange, String contentType, boolean cached, Parameters parameters,
+            Request request) throws IOException {
+        SortedMap<String, String> normalized = parameters.normalize(parseQuery(exchange.getRequestURI().getRawQuery()));
+        String key = exchange.getHttpContext().getPath() + normalized;
+        String answer = cached ? getCached(key) : null;
+        if (cached) {
+            analysis.getMetrics().recordCacheAccess("serverAnswers", answer != null);
+        }
+        if (answer == null) {
+            answer = request.answer(normalized);
+            if (answer == null) {
+                send(exchange, 404, "text/plain", "Not found: " + exchange.getRequestURI());
+                return;
+            }
+            if (cached) {
+                cache(key, answer);
+            }
+        }
+        send(exchange, 200, contentType, answer);
+    }
+
+    private String getCached(String key) {
+        synchronized (answers) {
+            return answers.get(key);
+        }
+    }
+
+    /**
+     * Caches the answer and drops the least recently used answers until the cache holds at most
+     * MAX_CACHED_CHARS characters, which drops an answer larger than that right away.
+     */
+    private void cache(String key, String answer) {
+        synchronized (answers) {
+            String previous = answers.put(key, answer);
+            cachedChars += answer.length() - (previous == null ? 0 : previous.length());
+            Iterator<String> eldest = answers.values().iterator();
+            while (cachedChars > MAX_CACHED_CHARS && eldest.hasNext()) {
+                cachedChars -= eldest.next().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
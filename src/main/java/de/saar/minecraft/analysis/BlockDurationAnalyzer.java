@@ -0,0 +1,26 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the times in ms between each block placed event (regardless of the instructions).
+ * The first duration is the one from the start of the game until the first block was placed.
+ */
+class BlockDurationAnalyzer implements GameLogVisitor {
+    final List<Integer> durations = new ArrayList<>();
+    private long previous;
+    private boolean started = false;
+
+    @Override
+    public void visit(GameEvents events, int i) {
+        if (!started) {
+            previous = events.timestamps[i];
+            started = true;
+        }
+        if (events.types[i] == EventType.BLOCK_PLACED.code) {
+            durations.add((int) (events.timestamps[i] - previous));
+            previous = events.timestamps[i];
+        }
+    }
+}
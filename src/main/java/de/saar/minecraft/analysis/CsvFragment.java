@@ -0,0 +1,93 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The lines of data.csv for a group of games.  The number of instruction columns depends on
+ * the game with the most instructions, so each line is kept in the parts before, of and after
+ * the instruction columns and only padded when the file is rendered.  Fragments of disjoint
+ * groups of games, e.g. of the shards of a sharded analysis, can be merged.
+ */
+public class CsvFragment {
+    static final String SEPARATOR = ",";
+
+    private static class Line {
+        int gameId;
+        int numInstructions;
+        String start;
+        List<String> instructionFields;
+        String end;
+    }
+
+    private int headerGameId;
+    private String headerStart;
+    private String headerEnd;
+    private List<Line> lines = new ArrayList<>();
+
+    /**
+     * Computes the lines of the games in the given order, the header is the one of the first
+     * game.
+     */
+    public static CsvFragment of(List<GameInformation> games) {
+        var fragment = new CsvFragment();
+        for (var g : games) {
+            if (g.instructionDurations == null) {
+                g.getDurationPerInstruction();
+            }
+            var line = new Line();
+            line.gameId = g.gameId;
+            line.numInstructions = g.instructionDurations.size();
+            line.start = g.getCSVLineStart(SEPARATOR);
+            line.instructionFields = g.getCSVInstructionFields(SEPARATOR);
+            line.end = g.getCSVLineEnd(SEPARATOR);
+            fragment.lines.add(line);
+        }
+        if (!games.isEmpty()) {
+            fragment.headerGameId = games.get(0).gameId;
+            fragment.headerStart = games.get(0).getCSVHeaderStart(SEPARATOR);
+            fragment.headerEnd = games.get(0).getCSVHeaderEnd(SEPARATOR);
+        }
+        return fragment;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    /**
+     * Adds the lines of the other fragment, which must be for different games, to this one.
+     * The lines are ordered by game ID and the header is the one of the game with the lower ID.
+     */
+    public CsvFragment merge(CsvFragment other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty() || other.headerGameId < headerGameId) {
+            headerGameId = other.headerGameId;
+            headerStart = other.headerStart;
+            headerEnd = other.headerEnd;
+        }
+        lines.addAll(other.lines);
+        lines.sort(Comparator.comparingInt((line) -> line.gameId));
+        return this;
+    }
+
+    /**
+     * @return the content of data.csv, the fragment must not be empty
+     */
+    public String render() {
+        int maxInstructionDurationsSize = lines.stream()
+                .mapToInt((line) -> line.numInstructions)
+                .max()
+                .orElse(0);
+        var writer = new StringBuilder(GameInformation.joinCSVHeader(headerStart, headerEnd, SEPARATOR,
+                maxInstructionDurationsSize));
+        for (Line line : lines) {
+            writer.append(GameInformation.joinCSVLine(line.start, line.instructionFields, line.end, SEPARATOR,
+                    maxInstructionDurationsSize));
+        }
+        return writer.toString();
+    }
+}
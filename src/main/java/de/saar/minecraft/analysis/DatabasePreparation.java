@@ -0,0 +1,142 @@
+package de.saar.minecraft.analysis;
+
+import static de.saar.minecraft.broker.db.Tables.GAMES;
+import static de.saar.minecraft.broker.db.Tables.GAME_LOGS;
+import static de.saar.minecraft.broker.db.Tables.QUESTIONNAIRES;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Query;
+import org.jooq.ResultQuery;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+/**
+ * Prepares an imported copy of the experiment database for the analysis.  A mysqldump import
+ * only has the indexes of the experiment server, so this adds the composite indexes the
+ * queries of JdbcGameLogSource filter and sort by, and logs the query plans of those queries
+ * before and after.  This alters the database, so only run it on your own copy.
+ *
+ * <p>The indexes let the queries find the rows of a game in ID order without a sort, they do
+ * not cover them: the rows themselves are still read from the table.</p>
+ */
+public class DatabasePreparation {
+    private static final Logger logger = LogManager.getLogger(DatabasePreparation.class);
+
+    /**
+     * An index this class creates unless an index with the same leading columns exists.
+     */
+    private static class Index {
+        final String name;
+        final Table<?> table;
+        final List<String> columns;
+
+        Index(String name, Table<?> table, String... columns) {
+            this.name = name;
+            this.table = table;
+            this.columns = List.of(columns);
+        }
+    }
+
+    private static final List<Index> INDEXES = List.of(
+            // the log of a game in ID order, for single games, batches and partitions
+            new Index("GAME_LOGS_GAMEID_ID", GAME_LOGS, "GAMEID", "ID"),
+            new Index("QUESTIONNAIRES_GAMEID_ID", QUESTIONNAIRES, "GAMEID", "ID"));
+
+    private final JdbcGameLogSource source;
+    private final DSLContext jooq;
+
+    public DatabasePreparation(JdbcGameLogSource source) {
+        this.source = source;
+        this.jooq = source.getJooq();
+    }
+
+    /**
+     * Adds the missing indexes and logs the query plans.
+     */
+    public void run() {
+        Map<String, ResultQuery<?>> queries = getPlannedQueries();
+        logPlans(queries, "before");
+        for (Index index : INDEXES) {
+            createIfMissing(index);
+        }
+        for (Table<?> table : List.of(GAME_LOGS, QUESTIONNAIRES)) {
+            jooq.fetch("analyze table {0}", table);
+        }
+        logPlans(queries, "after");
+    }
+
+    /**
+     * @return the queries the analysis runs most often, for the first game
+     */
+    private Map<String, ResultQuery<?>> getPlannedQueries() {
+        Integer first = jooq.select(DSL.min(GAMES.ID)).from(GAMES).fetchOne().value1();
+        int gameId = first == null ? 0 : first;
+        List<Integer> batch = jooq.select(GAMES.ID)
+                .from(GAMES)
+                .orderBy(GAMES.ID.asc())
+                .limit(JdbcGameLogSource.BATCH_SIZE)
+                .fetch(GAMES.ID);
+        Map<String, ResultQuery<?>> queries = new LinkedHashMap<>();
+        queries.put("gameLogs", source.eventsQuery(gameId));
+        queries.put("gameLogsBatch", source.eventsBatchQuery(batch));
+        if (!batch.isEmpty()) {
+            queries.put("gameLogsPartition", source.eventsRangeQuery(batch.get(0), batch.get(batch.size() - 1)));
+        }
+        queries.put("questionnaire", source.questionnaireQuery(gameId));
+        queries.put("newLogs", source.newEventsQuery(source.getLastLogId()));
+        return queries;
+    }
+
+    private void logPlans(Map<String, ResultQuery<?>> queries, String when) {
+        for (var query : queries.entrySet()) {
+            var plan = jooq.fetch("explain " + jooq.renderInlined(query.getValue()));
+            logger.info("Query plan of {} {} preparing the database:\n{}", query.getKey(), when, plan.format());
+        }
+    }
+
+    private void createIfMissing(Index index) {
+        for (List<String> existing : getIndexes(index.table)) {
+            if (existing.size() >= index.columns.size()
+                    && existing.subList(0, index.columns.size()).equals(index.columns)) {
+                logger.info("{} already has an index on {}", index.table.getName(), index.columns);
+                return;
+            }
+        }
+        logger.info("Creating index {} on {}", index.name, index.columns);
+        List<Field<?>> fields = index.columns.stream()
+                .map((column) -> DSL.field(DSL.name(column)))
+                .collect(Collectors.toList());
+        Query create = jooq.createIndex(DSL.name(index.name)).on(index.table, fields);
+        create.execute();
+    }
+
+    /**
+     * @return the columns of every index of the table, in index order
+     */
+    private List<List<String>> getIndexes(Table<?> table) {
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        for (var row : jooq.fetch("select INDEX_NAME, COLUMN_NAME from information_schema.STATISTICS "
+                + "where TABLE_SCHEMA = coalesce({0}, database()) and TABLE_NAME = {1} "
+                + "order by INDEX_NAME, SEQ_IN_INDEX",
+                DSL.val(schemaOf(table)), DSL.val(table.getName()))) {
+            indexes.computeIfAbsent(row.get(0, String.class), (name) -> new ArrayList<>())
+                    .add(row.get(1, String.class));
+        }
+        return new ArrayList<>(indexes.values());
+    }
+
+    /**
+     * @return the schema of the generated table, null if it uses the database of the connection
+     */
+    private static String schemaOf(Table<?> table) {
+        return table.getSchema() == null ? null : table.getSchema().getName();
+    }
+}
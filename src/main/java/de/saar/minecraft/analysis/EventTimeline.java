@@ -0,0 +1,91 @@
+package de.saar.minecraft.analysis;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * The times of one kind of event of a game, e.g. the mistakes, as a sorted array of epoch
+ * millis.  The index of a time in the array is the number of events before it, so counting
+ * the events in a time window takes two binary searches instead of a pass over the log.
+ */
+public class EventTimeline {
+    private final long[] times;
+
+    private EventTimeline(long[] times) {
+        this.times = times;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * @return the number of events strictly after from and strictly before to, in epoch millis
+     */
+    public int countBetween(long from, long to) {
+        return Math.max(0, firstIndexNotBefore(to) - firstIndexAfter(from));
+    }
+
+    /**
+     * @return the number of events strictly after begin and strictly before end
+     */
+    public int countBetween(LocalDateTime begin, LocalDateTime end) {
+        return countBetween(GameEvents.toEpochMillis(begin), GameEvents.toEpochMillis(end));
+    }
+
+    /**
+     * @return the index of the first time > time, size() if there is none
+     */
+    private int firstIndexAfter(long time) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of the first time >= time, size() if there is none
+     */
+    private int firstIndexNotBefore(long time) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Collects the times in any order.
+     */
+    public static class Builder {
+        private long[] times = new long[16];
+        private int size = 0;
+
+        public Builder add(long time) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+            }
+            times[size++] = time;
+            return this;
+        }
+
+        public EventTimeline build() {
+            long[] sorted = Arrays.copyOf(times, size);
+            Arrays.sort(sorted);
+            return new EventTimeline(sorted);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * The kinds of GAME_LOGS entries the analysis distinguishes.  The event store keeps the type
+ * of each event as the byte {@link #code} instead of the MESSAGE_TYPE string.
+ */
+public enum EventType {
+    BLOCK_PLACED("BlockPlacedMessage"),
+    BLOCK_DESTROYED("BlockDestroyedMessage"),
+    TEXT_MESSAGE("TextMessage"),
+    /** every other message type, e.g. game state changes */
+    OTHER(null);
+
+    private static final EventType[] BY_CODE = values();
+
+    final byte code;
+    final String messageType;
+
+    EventType(String messageType) {
+        this.code = (byte) ordinal();
+        this.messageType = messageType;
+    }
+
+    public static EventType fromCode(byte code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * @return the event type for a MESSAGE_TYPE value of GAME_LOGS
+     */
+    public static EventType fromMessageType(String messageType) {
+        if (messageType == null) {
+            return OTHER;
+        }
+        switch (messageType) {
+            case "BlockPlacedMessage":
+                return BLOCK_PLACED;
+            case "BlockDestroyedMessage":
+                return BLOCK_DESTROYED;
+            case "TextMessage":
+                return TEXT_MESSAGE;
+            default:
+                return OTHER;
+        }
+    }
+
+    /**
+     * @return true for events that carry block coordinates instead of a message
+     */
+    public boolean isBlockEvent() {
+        return this == BLOCK_PLACED || this == BLOCK_DESTROYED;
+    }
+}
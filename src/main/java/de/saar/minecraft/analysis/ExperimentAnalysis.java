@@ -1,94 +1,456 @@
 package de.saar.minecraft.analysis;
 
-import de.saar.minecraft.broker.db.Tables;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import org.apache.commons.math3.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jooq.DSLContext;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DSL;
 
 public class ExperimentAnalysis {
 
     private static final Logger logger = LogManager.getLogger(ExperimentAnalysis.class);
     private final AnalysisConfiguration config;
-    private DSLContext jooq;
-    private final List<String> scenarios;
-    private final List<String> architects;
+    private final GameLogSource source;
+    /**
+     * The GAMES rows of all games, scenarios and architects are filtered by their codes.
+     * Reloaded by poll() when games were added.
+     */
+    private GameMetadataTable games;
     private final List<GameInformation> gameInformations;
+    private final AnalysisMetrics metrics = new AnalysisMetrics();
+    /**
+     * The directory the reports are written into, the one of the shard for a sharded analysis.
+     */
+    private final String dirName;
+    /**
+     * Collects the aggregate reports of a sharded analysis instead of writing them, null
+     * unless a shard is configured.
+     */
+    private final ShardOutput shardOutput;
+    private final Shard shard;
+    /**
+     * The IDs of the games of the shard, null unless a shard is configured.
+     */
+    private final Set<Integer> shardGames;
+
+    /**
+     * How far below the highest ID seen so far poll() reads GAME_LOGS rows again.  The IDs are
+     * handed out when a row is inserted, not when its transaction commits, so a row can become
+     * visible after rows with higher IDs.
+     */
+    static final long SAFETY_WINDOW = 1000;
 
-    public ExperimentAnalysis(AnalysisConfiguration config) {
+    /**
+     * The highest GAME_LOGS ID seen by poll(), -1 before the first poll.
+     */
+    private long lastLogId = -1;
+    /**
+     * The highest QUESTIONNAIRES ID seen by poll().
+     */
+    private long lastQuestionnaireId = -1;
+    private final CountDownLatch stopWatching = new CountDownLatch(1);
+
+    /**
+     * Writes the reports while the next ones are computed, opened on first use and closed by
+     * finishReports() at the end of each public analysis method.
+     */
+    private ReportWriter reportWriter = null;
+
+    public ExperimentAnalysis(AnalysisConfiguration config) throws IOException {
+        this(config, GameLogSource.open(config));
+    }
+
+    public ExperimentAnalysis(AnalysisConfiguration config, GameLogSource source) {
         this.config = config;
-        var url = config.getUrl();
-        var user = config.getUser();
-        var password = config.getPassword();
+        this.source = source;
+        source.setMetrics(metrics);
+        try (var phase = metrics.phase("loadGames")) {
+            games = new GameMetadataTable(source.streamGames().collect(Collectors.toList()));
+        }
+        // a shard only analyzes its own games, but knows all scenarios and architects, so
+        // every shard writes the same reports
+        shard = config.getShard() == null ? null : Shard.parse(config.getShard());
+        if (shard == null) {
+            dirName = config.getDirName();
+            shardOutput = null;
+            shardGames = null;
+        } else {
+            dirName = Paths.get(config.getDirName(), shard.getDirectoryName()).toString();
+            shardOutput = new ShardOutput(shard);
+            List<Integer> gameIds = new ArrayList<>(games.size());
+            for (int row = 0; row < games.size(); row++) {
+                gameIds.add(games.getId(row));
+            }
+            try (var phase = metrics.phase("loadLogSizes")) {
+                shardGames = shard.select(gameIds, source.getLogSizes());
+            }
+            logger.info("Analyzing the {} games of shard {}, writing into {}", shardGames.size(), shard, dirName);
+        }
+        gameInformations = new ArrayList<>(games.size());
+        addGameInformations(0);
+        if (config.isPrefetchEvents()) {
+            Map<Integer, GameInformation> byId = gameInformations.stream()
+                    .collect(Collectors.toMap((info) -> info.gameId, (info) -> info));
+            try (var phase = metrics.phase("loadEvents")) {
+                source.extractEvents(byId.keySet(), (events) -> byId.get(events.getGameId()).setEvents(events));
+            }
+        }
+        QuestionnaireTable questionnaires;
+        try (var phase = metrics.phase("loadQuestionnaires")) {
+            questionnaires = source.getQuestionnaires();
+        }
+        for (GameInformation info : gameInformations) {
+            info.setQuestionnaire(questionnaires.get(info.gameId));
+        }
+        if (config.isPushDownSummary()) {
+            Map<Integer, GameSummary> summaries;
+            try (var phase = metrics.phase("loadSummaries")) {
+                summaries = source.getSummaries();
+            }
+            for (GameInformation info : gameInformations) {
+                info.setSummary(summaries.get(info.gameId));
+            }
+        }
+    }
 
-        try {
-            Connection conn = DriverManager.getConnection(url, user, password);
-            DSLContext ret = DSL.using(
-                    conn,
-                    SQLDialect.valueOf("MYSQL")
-            );
-            logger.info("Connected to database at {}.", url);
-            this.jooq = ret;
-        } catch (SQLException e) {
-            logger.error(e.getMessage());
-        }
-        scenarios = jooq.selectDistinct(Tables.GAMES.SCENARIO)
-                .from(Tables.GAMES)
-                .fetch(Tables.GAMES.SCENARIO);
-        architects = jooq.selectDistinct(Tables.GAMES.ARCHITECT_INFO)
-                .from(Tables.GAMES)
-                .fetch(Tables.GAMES.ARCHITECT_INFO);
-        gameInformations = jooq.selectFrom(Tables.GAMES)
-                .orderBy(Tables.GAMES.ID.asc())
-                .fetchStream()
-                .map((x) -> new GameInformation(x.getId(), jooq))
-                .collect(Collectors.toList());
+    /**
+     * adds the games of the table from the given row on, if they belong to the shard.  Games
+     * that are added while an experiment is watched belong to the last shard.
+     */
+    private void addGameInformations(int firstRow) {
+        for (int row = firstRow; row < games.size(); row++) {
+            if (shard != null && !shardGames.contains(games.getId(row)) && !(firstRow > 0 && shard.isLast())) {
+                continue;
+            }
+            var info = new GameInformation(games.getId(row), source, metrics);
+            info.setMetadata(games);
+            gameInformations.add(info);
+        }
+    }
+
+    /**
+     * writes the GAMES, GAME_LOGS and QUESTIONNAIRES tables of the data source into a snapshot
+     * file which can be analyzed without a database, see ExperimentSnapshot.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void exportSnapshot(Path file) throws IOException {
+        try (var phase = metrics.phase("exportSnapshot")) {
+            ExperimentSnapshot.export(source, file);
+        }
+        metrics.recordFileWritten(file.toFile().length());
+    }
+
+    /**
+     * @return the directory the reports are written into
+     */
+    public String getDirName() {
+        return dirName;
+    }
+
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * writes the metrics of this run into the file "metrics.json" in the output directory.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void writeMetrics() throws IOException {
+        File dir = new File(dirName);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        metrics.writeJson(new File(dir, "metrics.json").toPath());
     }
 
+
     /**
      * full analysis for all scenarios and architects
      *
      * @throws IOException from writeAnalysis(...)
      */
     public void makeAnalysis() throws IOException {
-        String dirName = config.getDirName();
         if (! new File(dirName).isDirectory()) {
-            boolean wasCreated = new File(dirName).mkdir();
+            boolean wasCreated = new File(dirName).mkdirs();
             if (!wasCreated) {
                 logger.error("Output directory {} could not be created", dirName);
                 return;
             }
         }
-        makeScenarioAnalysis();
-        makeArchitectAnalysis();
-        makeGameAnalyses();
-        makeInstructionLevelAnalysis();
-
-        for (var scenario: scenarios) {
-            for (var architect: architects) {
-                var gamedata = gameInformations.stream()
-                        .filter((gi) -> {
-                            if (gi.getArchitect() == null) {
-                                return false;
-                            }
-                            return gi.getArchitect().equals(architect);
-                        })
-                        .filter((gi) -> gi.getScenario().equals(scenario))
-                        .collect(Collectors.toList());
-                writeAnalysis(scenario + "-" + architect + ".md", gamedata);
+        try (var phase = metrics.phase("fullAnalysis")) {
+            if (config.isVirtualThreads()) {
+                // load all games in parallel before the aggregate analyses go through them
+                try (var load = metrics.phase("loadGameLogs")) {
+                    forEachGame(GameInformation::prepare);
+                }
+            }
+            makeReportFamilies();
+        }
+        finishReports();
+    }
+
+    /**
+     * keeps the reports up to date while an experiment is running: runs the full analysis and
+     * then polls the source for new GAME_LOGS and QUESTIONNAIRES rows every interval, see
+     * poll().  Returns after stopWatching() was called or the thread was interrupted, once the
+     * reports of the last poll are written.
+     *
+     * @throws IOException if a report could not be written
+     */
+    public void watch(Duration interval) throws IOException {
+        try {
+            poll();
+            makeAnalysis();
+            logger.info("Watching for new game logs every {} seconds", interval.toSeconds());
+            while (!stopWatching.await(interval.toMillis(), TimeUnit.MILLISECONDS)) {
+                List<Integer> changed = poll();
+                if (!changed.isEmpty()) {
+                    logger.info("Refreshed the reports of games {}", changed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // a failed poll can leave reports in the queue, they are written before returning
+            finishReports();
+        }
+    }
+
+    /**
+     * lets watch() return at the end of the poll it is running, if any, and stops it from
+     * waiting for the next one.  Can be called from any thread, e.g. a shutdown hook.
+     */
+    public void stopWatching() {
+        stopWatching.countDown();
+    }
+
+    /**
+     * fetches the GAME_LOGS and QUESTIONNAIRES rows written since the last poll and rewrites
+     * the reports they change: the reports of the games with new rows, the aggregate reports of
+     * their scenarios, architects, scenario-architect combinations and instruction levels, and
+     * data.csv.  The last SAFETY_WINDOW IDs below the highest one seen are read again, so rows
+     * that committed late are not missed; rows the games already have are ignored.  The games
+     * continue their log pass with the new rows where they can, see
+     * GameInformation.appendEvents(...).  The questionnaires are polled by their own IDs, since
+     * they are usually written after the last log row of a game.  The first poll only remembers
+     * the last rows, so it should come before the full analysis.
+     *
+     * @return the IDs of the games with new rows or answers
+     * @throws IOException if a report could not be written
+     */
+    public List<Integer> poll() throws IOException {
+        if (lastLogId < 0) {
+            lastLogId = source.getLastLogId();
+            lastQuestionnaireId = source.getLastQuestionnaireId();
+            return List.of();
+        }
+        try (var phase = metrics.phase("poll")) {
+            List<GameEvents> newEvents = source.getEventsAfter(Math.max(0, lastLogId - SAFETY_WINDOW));
+            // rows up to this ID that are not committed yet are in the window of the next poll
+            long questionnaireId = source.getLastQuestionnaireId();
+            QuestionnaireTable newAnswers = source.getQuestionnairesAfter(
+                    Math.max(0, lastQuestionnaireId - SAFETY_WINDOW));
+            lastQuestionnaireId = Math.max(lastQuestionnaireId, questionnaireId);
+            if (newEvents.isEmpty() && newAnswers.getGameIds().isEmpty()) {
+                return List.of();
+            }
+            int numScenarios = games.getNumScenarios();
+            int numArchitects = games.getNumArchitects();
+            if (newEvents.stream().anyMatch((events) -> games.rowOf(events.getGameId()) < 0)
+                    || newAnswers.getGameIds().stream().anyMatch((gameId) -> games.rowOf(gameId) < 0)) {
+                addNewGames();
+            }
+            List<GameInformation> changed = addNewRows(newEvents, newAnswers);
+            boolean newCodes = games.getNumScenarios() != numScenarios || games.getNumArchitects() != numArchitects;
+            refreshReports(changed, newCodes);
+            return changed.stream()
+                    .map((info) -> info.gameId)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * hands the polled rows to their games.
+     *
+     * @return the games whose log or questionnaire changed, ordered by ID
+     */
+    private List<GameInformation> addNewRows(List<GameEvents> newEvents, QuestionnaireTable newAnswers) {
+        Map<Integer, GameInformation> changed = new TreeMap<>();
+        for (GameEvents events : newEvents) {
+            lastLogId = Math.max(lastLogId, events.ids[events.size() - 1]);
+            GameInformation info = getGame(events.getGameId());
+            // games of other shards are not analyzed here
+            if (info != null && info.appendEvents(events)) {
+                changed.put(info.gameId, info);
             }
         }
+        for (int gameId : newAnswers.getGameIds()) {
+            GameInformation info = getGame(gameId);
+            if (info != null && info.updateQuestionnaire(newAnswers.get(gameId))) {
+                changed.put(gameId, info);
+            }
+        }
+        return new ArrayList<>(changed.values());
+    }
 
+    /**
+     * reloads the GAMES table when games were added during the experiment.  The new games
+     * have the highest IDs, so the rows and codes of the known games stay the same.
+     */
+    private void addNewGames() {
+        int known = games.size();
+        try (var phase = metrics.phase("loadGames")) {
+            games = new GameMetadataTable(source.streamGames().collect(Collectors.toList()));
+        }
+        for (GameInformation info : gameInformations) {
+            info.setMetadata(games);
+        }
+        addGameInformations(known);
+    }
+
+    /**
+     * rewrites the reports of the changed games and the aggregate reports they are part of.
+     * If there are new scenarios or architects, all aggregate reports are written again,
+     * since every combination gets a report.
+     */
+    private void refreshReports(List<GameInformation> changed, boolean newCodes) throws IOException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (GameInformation info : changed) {
+            gameReport(info);
+        }
+        if (newCodes) {
+            scenarioReports();
+            architectReports();
+            instructionLevelReports();
+            makeCombinationAnalyses();
+        } else {
+            Set<Integer> scenarios = new TreeSet<>();
+            Set<Integer> architects = new TreeSet<>();
+            Set<Pair<Integer, Integer>> combinations = new LinkedHashSet<>();
+            for (GameInformation info : changed) {
+                scenarios.add(info.getScenarioCode());
+                if (info.getArchitect() != null) {
+                    architects.add(info.getArchitectCode());
+                    combinations.add(new Pair<>(info.getScenarioCode(), info.getArchitectCode()));
+                }
+            }
+            for (int scenario : scenarios) {
+                scenarioReport(scenario);
+                var levels = gameInformations.stream()
+                        .filter(withScenario(scenario))
+                        .filter((x) -> x.getArchitect() != null && x.wasSuccessful())
+                        .collect(Collectors.groupingBy(GameInformation::inferInstructionLevel));
+                instructionLevelReports(scenario, levels);
+            }
+            for (int architect : architects) {
+                architectReport(architect);
+            }
+            for (var combination : combinations) {
+                combinationReport(combination.getFirst(), combination.getSecond());
+            }
+        }
+        if (changed.stream().anyMatch(GameInformation::hasNumericQuestions)) {
+            csvReport();
+        }
+        finishReports();
+    }
+
+    /**
+     * Work on a whole report family, e.g. one report per scenario.
+     */
+    private interface ReportTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * runs the report families of the full analysis as independent tasks on one executor.  The
+     * families only read the games, so they run at the same time; data.csv waits for the game
+     * analyses, which have computed the instruction durations of every game by then.
+     *
+     * @throws IOException the first exception thrown by a family
+     */
+    private void makeReportFamilies() throws IOException {
+        ExecutorService executor = config.isVirtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (executor) {
+            var games = CompletableFuture.runAsync(unchecked(this::gameReports), executor);
+            var families = CompletableFuture.allOf(
+                    CompletableFuture.runAsync(unchecked(this::scenarioReports), executor),
+                    CompletableFuture.runAsync(unchecked(this::architectReports), executor),
+                    CompletableFuture.runAsync(unchecked(this::instructionLevelReports), executor),
+                    CompletableFuture.runAsync(unchecked(this::makeCombinationAnalyses), executor),
+                    games.thenRunAsync(unchecked(this::csvReport), executor));
+            families.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static Runnable unchecked(ReportTask task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * aggregate analysis for every scenario-architect combination
+     *
+     * @throws IOException from writeAnalysis(...)
+     */
+    private void makeCombinationAnalyses() throws IOException {
+        for (int scenario = 0; scenario < games.getNumScenarios(); scenario++) {
+            for (int architect = 0; architect < games.getNumArchitects(); architect++) {
+                combinationReport(scenario, architect);
+            }
+        }
+    }
+
+    private void combinationReport(int scenario, int architect) throws IOException {
+        var gamedata = gameInformations.stream()
+                .filter(withArchitect(architect))
+                .filter(withScenario(scenario))
+                .collect(Collectors.toList());
+        File file = new File(dirName,
+                games.getScenarioName(scenario) + "-" + games.getArchitectName(architect) + ".md");
+        writeAggregate("aggregateAnalysis", new AggregateInformation(gamedata), file);
     }
 
     /**
@@ -97,9 +459,125 @@ public class ExperimentAnalysis {
      * @throws IOException from writeAnalysis(file)
      */
     public void writeAnalysis(String analysisName, List<GameInformation> gi) throws IOException {
-        File file = new File(config.getDirName(), analysisName);
-        var info = new AggregateInformation(gi);
-        info.writeAnalysis(file);
+        File file = new File(dirName, analysisName);
+        writeAggregate("aggregateAnalysis", new AggregateInformation(gi), file);
+        finishReports();
+    }
+
+    /**
+     * renders the aggregate analysis, queues it to be written into the file and records the
+     * time rendering took as the given phase.
+     */
+    private void writeAggregate(String phaseName, AggregateInformation info, File file) throws IOException {
+        if (shardOutput != null) {
+            try (var phase = metrics.phase(phaseName)) {
+                shardOutput.addReport(Paths.get(dirName).relativize(file.toPath()).toString(), info.getStatistics());
+            }
+            return;
+        }
+        String report;
+        try (var phase = metrics.phase(phaseName)) {
+            report = info.renderAnalysis();
+        }
+        getReportWriter().submit(file.toPath(), report);
+    }
+
+    /**
+     * renders the analysis of one game, queues it to be written into the file and records the
+     * time rendering took.
+     */
+    private void writeGame(GameInformation info, File file) throws IOException {
+        long start = System.nanoTime();
+        String report;
+        try (var phase = metrics.phase("gameAnalysis")) {
+            report = info.renderAnalysis();
+        }
+        metrics.recordGame(info.gameId, System.nanoTime() - start);
+        getReportWriter().submit(file.toPath(), report);
+    }
+
+    /**
+     * Work on a single game.
+     */
+    private interface GameTask {
+        void run(GameInformation info) throws IOException;
+    }
+
+    /**
+     * runs the task for every game.  With virtualThreads set in the configuration, every game
+     * gets its own virtual thread.  The threads mostly wait for the database; the source limits
+     * how many of them query it at the same time.
+     *
+     * @throws IOException the first exception thrown by a task
+     */
+    private void forEachGame(GameTask task) throws IOException {
+        if (!config.isVirtualThreads()) {
+            for (GameInformation info : gameInformations) {
+                task.run(info);
+            }
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (GameInformation info : gameInformations) {
+                futures.add(executor.submit(() -> {
+                    task.run(info);
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while analyzing games");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private synchronized ReportWriter getReportWriter() {
+        if (reportWriter == null) {
+            reportWriter = new ReportWriter(metrics);
+        }
+        return reportWriter;
+    }
+
+    /**
+     * waits until all queued reports are written.
+     *
+     * @throws IOException if a report could not be written
+     */
+    private synchronized void finishReports() throws IOException {
+        if (reportWriter != null) {
+            try {
+                reportWriter.close();
+            } finally {
+                reportWriter = null;
+            }
+        }
+        if (shardOutput != null) {
+            shardOutput.write(Paths.get(dirName));
+        }
+    }
+
+    private static Predicate<GameInformation> withScenario(int scenarioCode) {
+        return (gi) -> gi.getScenarioCode() == scenarioCode;
+    }
+
+    /**
+     * games without an architect never match, not even the code of null.
+     */
+    private static Predicate<GameInformation> withArchitect(int architectCode) {
+        return (gi) -> gi.getArchitectCode() == architectCode && gi.getArchitect() != null;
     }
 
     /**
@@ -111,22 +589,34 @@ public class ExperimentAnalysis {
      * @throws IOException from writeAnalysis(...)
      */
     public void makePartialAnalysis(String scenario, String architect, boolean onlySuccessful) throws IOException {
+        writeAnalysis(scenario + "-" + architect + "-" + onlySuccessful + ".md",
+                selectGames(scenario, architect, onlySuccessful));
+    }
+
+    /**
+     * @return the partial analysis makePartialAnalysis(...) writes, as markdown
+     */
+    public String renderPartialAnalysis(String scenario, String architect, boolean onlySuccessful) {
+        try (var phase = metrics.phase("aggregateAnalysis")) {
+            return new AggregateInformation(selectGames(scenario, architect, onlySuccessful)).renderAnalysis();
+        }
+    }
+
+    /**
+     * @return the games with the given properties, null for scenario or architect matches all
+     */
+    private List<GameInformation> selectGames(String scenario, String architect, boolean onlySuccessful) {
         List<GameInformation> gamedata = gameInformations;
 
         if (architect != null) {
             gamedata = gamedata.stream()
-                    .filter((gi) -> {
-                        if (gi.getArchitect() == null) {
-                            return false;
-                        }
-                        return gi.getArchitect().equals(architect);
-                    })
+                    .filter(withArchitect(games.architectCode(architect)))
                     .collect(Collectors.toList());
         }
 
         if (scenario != null) {
             gamedata = gamedata.stream()
-                    .filter((gi) -> gi.getScenario().equals(scenario))
+                    .filter(withScenario(games.scenarioCode(scenario)))
                     .collect(Collectors.toList());
         }
 
@@ -135,8 +625,7 @@ public class ExperimentAnalysis {
                     .filter(GameInformation::wasSuccessful)
                     .collect(Collectors.toList());
         }
-
-        writeAnalysis(scenario + "-" + architect + "-" + onlySuccessful + ".md", gamedata);
+        return gamedata;
     }
 
     /**
@@ -145,21 +634,38 @@ public class ExperimentAnalysis {
      * @throws IOException from writeAnalysis(file)
      */
     public void makeScenarioAnalysis() throws IOException {
-        Path basePath = Paths.get(config.getDirName(), "per_scenario");
-        if (!basePath.toFile().isDirectory() && !basePath.toFile().mkdir()) {
+        scenarioReports();
+        finishReports();
+    }
+
+    private void scenarioReports() throws IOException {
+        for (int scenario = 0; scenario < games.getNumScenarios(); scenario++) {
+            scenarioReport(scenario);
+        }
+    }
+
+    private void scenarioReport(int scenario) throws IOException {
+        var info = new AggregateInformation(
+                gameInformations
+                        .stream()
+                        .filter(withScenario(scenario))
+                        .collect(Collectors.toList()));
+        String currentFileName = String.format("scenario-details-%s.md", games.getScenarioName(scenario));
+        File file = new File(String.valueOf(reportDir("per_scenario")), currentFileName);
+        writeAggregate("scenarioAnalysis", info, file);
+    }
+
+    /**
+     * @return the directory of a report family in the output directory, created if needed
+     * @throws IOException if the directory cannot be created
+     */
+    private Path reportDir(String name) throws IOException {
+        Path basePath = Paths.get(dirName, name);
+        if (!basePath.toFile().isDirectory() && !basePath.toFile().mkdirs()) {
             logger.error("Could not create directory " + basePath.toString());
             throw new IOException("Could not create directory " + basePath.toString());
         }
-        for (String scenario: scenarios) {
-            var info = new AggregateInformation(
-                    gameInformations
-                            .stream()
-                            .filter((x) -> x.getScenario().equals(scenario))
-                            .collect(Collectors.toList()));
-            String currentFileName = String.format("scenario-details-%s.md", scenario);
-            File file = new File(String.valueOf(basePath), currentFileName);
-            info.writeAnalysis(file);
-        }
+        return basePath;
     }
 
     /**
@@ -168,29 +674,34 @@ public class ExperimentAnalysis {
      * @throws IOException from writeAnalysis(file)
      */
     public void makeInstructionLevelAnalysis() throws IOException {
-        Path basePath = Paths.get(config.getDirName(), "per_InstructionLevel");
-        if (!basePath.toFile().isDirectory() && !basePath.toFile().mkdir()) {
-            throw new IOException("Could not create directory " + basePath.toString());
+        instructionLevelReports();
+        finishReports();
+    }
+
+    private void instructionLevelReports() throws IOException {
+        // classify every successful game once instead of once per scenario and level
+        Map<Integer, Map<GameInformation.InstructionLevel, List<GameInformation>>> byLevel = gameInformations
+                .stream()
+                .filter((x) -> x.getArchitect() != null && x.wasSuccessful())
+                .collect(Collectors.groupingBy(GameInformation::getScenarioCode,
+                        Collectors.groupingBy(GameInformation::inferInstructionLevel)));
+        for (int scenario = 0; scenario < games.getNumScenarios(); scenario++) {
+            instructionLevelReports(scenario, byLevel.getOrDefault(scenario, Map.of()));
         }
-        for (String scenario: scenarios) {
-            for (GameInformation.InstructionLevel il: GameInformation.InstructionLevel.values()) {
-                var info = new AggregateInformation(
-                        gameInformations
-                                .stream()
-                                .filter((x) -> {
-                                    if (x.getArchitect() == null) {
-                                        return false;
-                                    }
-                                    return x.getScenario().equals(scenario)
-                                            && x.wasSuccessful()
-                                            && x.inferInstructionLevel().equals(il)
-                                            ;
-                                })
-                                .collect(Collectors.toList()), false);
-                String currentFileName = String.format("il-details-%s-%s.md", scenario, il);
-                File file = new File(String.valueOf(basePath), currentFileName);
-                info.writeAnalysis(file);
-            }
+    }
+
+    /**
+     * @param levels the successful games with an architect of the scenario, by instruction level
+     */
+    private void instructionLevelReports(int scenario,
+                                         Map<GameInformation.InstructionLevel, List<GameInformation>> levels)
+            throws IOException {
+        Path basePath = reportDir("per_InstructionLevel");
+        for (GameInformation.InstructionLevel il: GameInformation.InstructionLevel.values()) {
+            var info = new AggregateInformation(levels.getOrDefault(il, List.of()), false);
+            String currentFileName = String.format("il-details-%s-%s.md", games.getScenarioName(scenario), il);
+            File file = new File(String.valueOf(basePath), currentFileName);
+            writeAggregate("instructionLevelAnalysis", info, file);
         }
     }
 
@@ -200,43 +711,46 @@ public class ExperimentAnalysis {
      * @throws IOException from writeAnalysis(file)
      */
     public void makeArchitectAnalysis() throws IOException {
-        Path basePath = Paths.get(config.getDirName(), "per_architect");
-        if (!basePath.toFile().isDirectory() && !basePath.toFile().mkdir()) {
-            throw new IOException("Could not create directory " + basePath.toString());
-        }
-        for (String arch: architects) {
-            var info = new AggregateInformation(
-                    gameInformations
-                            .stream()
-                            .filter((x) -> {
-                                if (x.getArchitect() == null) {
-                                    return false;
-                                }
-                                return x.getArchitect().equals(arch);
-                            })
-                            .collect(Collectors.toList()), true);
-            String currentFileName = String.format("architect-details-%s.md", arch);
-            File file = new File(String.valueOf(basePath), currentFileName);
-            info.writeAnalysis(file);
+        architectReports();
+        finishReports();
+    }
+
+    private void architectReports() throws IOException {
+        for (int architect = 0; architect < games.getNumArchitects(); architect++) {
+            architectReport(architect);
         }
     }
 
+    private void architectReport(int architect) throws IOException {
+        var info = new AggregateInformation(
+                gameInformations
+                        .stream()
+                        .filter(withArchitect(architect))
+                        .collect(Collectors.toList()), true);
+        String currentFileName = String.format("architect-details-%s.md", games.getArchitectName(architect));
+        File file = new File(String.valueOf(reportDir("per_architect")), currentFileName);
+        writeAggregate("architectAnalysis", info, file);
+    }
+
     /**
      * analysis of all games
      *
      * @throws IOException from saveAsCSV()
      */
     public void makeGameAnalyses() throws IOException {
-        Path basePath = Paths.get(config.getDirName(), "per_game");
-        if (!basePath.toFile().isDirectory() && !basePath.toFile().mkdir()) {
-            throw new IOException("Could not create directory " + basePath.toString());
-        }
-        for (GameInformation info: gameInformations) {
-            String filename = String.format("game-%d.md", info.gameId);
-            File file = new File(basePath.toString(), filename);
-            info.writeAnalysis(file);
-        }
-        saveAsCSV();
+        gameReports();
+        csvReport();
+        finishReports();
+    }
+
+    private void gameReports() throws IOException {
+        forEachGame(this::gameReport);
+    }
+
+    private void gameReport(GameInformation info) throws IOException {
+        String filename = String.format("game-%d.md", info.gameId);
+        File file = new File(reportDir("per_game").toString(), filename);
+        writeGame(info, file);
     }
 
     /**
@@ -245,21 +759,52 @@ public class ExperimentAnalysis {
      * @throws IOException from writeAnalysis(file)
      */
     public void makeGameAnalysis(int gameId) throws IOException {
-        Path basePath = Paths.get(config.getDirName(), "per_game");
-        if (!basePath.toFile().isDirectory() && !basePath.toFile().mkdir()) {
-            throw new IOException("Could not create directory " + basePath.toString());
+        GameInformation info = getGame(gameId);
+        if (info == null) {
+            return;
+        }
+        gameReport(info);
+        finishReports();
+    }
+
+    /**
+     * @return the analysis of one game as markdown, null if there is no game with that ID
+     */
+    public String renderGameAnalysis(int gameId) {
+        GameInformation info = getGame(gameId);
+        if (info == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        String report;
+        try (var phase = metrics.phase("gameAnalysis")) {
+            report = info.renderAnalysis();
         }
-        GameInformation info = gameInformations.stream()
+        metrics.recordGame(info.gameId, System.nanoTime() - start);
+        return report;
+    }
+
+    private GameInformation getGame(int gameId) {
+        return gameInformations.stream()
                 .filter((x) -> x.gameId == gameId)
                 .findFirst()
                 .orElse(null);
+    }
+
+    /**
+     * prints the placed, destroyed and present blocks of one game at each of the given times.
+     * The replay of the game is indexed once, so asking for many times is cheap.
+     */
+    public void printBlocksAt(int gameId, List<LocalDateTime> times) {
+        GameInformation info = getGame(gameId);
         if (info == null) {
+            logger.error("There is no game with ID {}", gameId);
             return;
         }
-        String filename = String.format("game-%d.md", info.gameId);
-        File file = new File(basePath.toString(), filename);
-        info.writeAnalysis(file);
-        // info.printBlocksUntilTimestamp(LocalDateTime.of(2020,6,15, 11,17,25));
+        for (LocalDateTime time : times) {
+            System.out.println("Blocks of game " + gameId + " before " + time);
+            info.printBlocksUntilTimestamp(time);
+        }
     }
 
     /**
@@ -268,17 +813,8 @@ public class ExperimentAnalysis {
      * @throws IOException from saveCSV(file)
      */
     public void saveAsCSV() throws IOException {
-        File file = new File(config.getDirName(), "data.csv");
-        // only save complete games with questionnaire
-        var gi = gameInformations.stream()
-                .filter((x) -> ! x.getNumericQuestions().isEmpty())
-                .collect(Collectors.toList());
-        var info = new AggregateInformation(gi);
-        if (info.games.isEmpty()) {
-            logger.warn("There are no complete games with questionnaire, not saving a CSV file!");
-            return;
-        }
-        info.saveCSV(file);
+        csvReport();
+        finishReports();
     }
 
     /**
@@ -287,16 +823,65 @@ public class ExperimentAnalysis {
      * @throws IOException from saveCSV(...)
      */
     public void saveAsCSV(int startID, int endID) throws IOException {
-        File file = new File(config.getDirName(), "data.csv");
-        // only save complete games with questionnaire
-        var gi = gameInformations.stream()
-                .filter((x) -> ! x.getNumericQuestions().isEmpty())
-                .collect(Collectors.toList());
-        var info = new AggregateInformation(gi);
-        if (info.games.isEmpty()) {
+        String csv = renderCSV(startID, endID);
+        if (csv == null) {
             logger.warn("There are no complete games with questionnaire, not saving a CSV file!");
             return;
         }
-        info.saveCSV(file, startID, endID);
+        File file = new File(dirName, "data.csv");
+        getReportWriter().submit(file.toPath(), csv);
+        finishReports();
+    }
+
+    private void csvReport() throws IOException {
+        if (shardOutput != null) {
+            try (var phase = metrics.phase("csv")) {
+                shardOutput.setCsv(CsvFragment.of(getCompleteGames()));
+            }
+            return;
+        }
+        String csv = renderCSV();
+        if (csv == null) {
+            logger.warn("There are no complete games with questionnaire, not saving a CSV file!");
+            return;
+        }
+        File file = new File(dirName, "data.csv");
+        getReportWriter().submit(file.toPath(), csv);
+    }
+
+    /**
+     * @return the content of data.csv, null if no game has a questionnaire
+     */
+    public String renderCSV() {
+        var info = new AggregateInformation(getCompleteGames());
+        if (info.games.isEmpty()) {
+            return null;
+        }
+        try (var phase = metrics.phase("csv")) {
+            return info.renderCSV();
+        }
+    }
+
+    /**
+     * @return the content of data.csv for a range of games (inclusive endID), null if no game
+     *     has a questionnaire
+     */
+    public String renderCSV(int startID, int endID) {
+        var info = new AggregateInformation(getCompleteGames());
+        if (info.games.isEmpty()) {
+            return null;
+        }
+        try (var phase = metrics.phase("csv")) {
+            return info.renderCSV(startID, endID);
+        }
+    }
+
+    /**
+     * @return the complete games with questionnaire, only these are saved in data.csv
+     */
+    private List<GameInformation> getCompleteGames() {
+        return gameInformations.stream()
+                .filter(GameInformation::hasNumericQuestions)
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,372 @@
+package de.saar.minecraft.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.apache.commons.math3.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A binary snapshot of the GAMES, GAME_LOGS and QUESTIONNAIRES tables of an experiment database.
+ * A snapshot is created once from the database with {@link #export(GameLogSource, Path)} and can
+ * then be analyzed offline: {@link #open(Path)} maps the file into memory and the game logs
+ * and strings are only decoded when they are used, so opening a snapshot only reads the
+ * GAMES section.  Files larger than 2 GB are mapped in several windows, see MappedFile.
+ *
+ * <p>File layout (all numbers big-endian):
+ * <pre>
+ * header:         int magic, int version, long stringsOffset, long gamesOffset
+ * events:         per game the columns of its GameEvents:
+ *                 long[] ids, byte[] types, long[] timestamps, int[] x, int[] y, int[] z,
+ *                 int[] messages
+ * questionnaires: per game int question, int answer for each row
+ * string data:    per string int byteLength and UTF-8 bytes
+ * strings:        int count, per string the long offset of its data
+ * games:          int count, per game int id, int scenario, int architect, int playerName,
+ *                 int clientIp, long eventsOffset, int numEvents, long questionsOffset,
+ *                 int numQuestions
+ * </pre>
+ * Messages, questions, answers and the string columns of GAMES are indices into the
+ * string section, -1 stands for null.</p>
+ */
+public class ExperimentSnapshot implements GameLogSource {
+    static final int MAGIC = 0x4d435341; // "MCSA"
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int GAME_ENTRY_SIZE = 5 * 4 + 8 + 4 + 8 + 4;
+    private static final int NULL = -1;
+
+    private static final Logger logger = LogManager.getLogger(ExperimentSnapshot.class);
+
+    private final MappedFile file;
+    private final StringTable strings;
+    private final Map<Integer, GameEntry> games;
+
+    private ExperimentSnapshot(MappedFile file, long stringsOffset, Map<Integer, GameEntry> games) {
+        this.file = file;
+        this.games = games;
+        long index = stringsOffset + Integer.BYTES;
+        this.strings = new StringTable(file.getInt(stringsOffset), (id) -> {
+            long data = file.getLong(index + (long) Long.BYTES * id);
+            return file.getString(data + Integer.BYTES, file.getInt(data));
+        });
+    }
+
+    /**
+     * The GAMES row of one game and where its events and questionnaire are stored.
+     */
+    private static class GameEntry {
+        int id;
+        int scenario;
+        int architect;
+        int playerName;
+        int clientIp;
+        long eventsOffset;
+        int numEvents;
+        long questionsOffset;
+        int numQuestions;
+    }
+
+    /**
+     * Maps a snapshot file into memory.
+     *
+     * @throws IOException if the file cannot be read or is not a snapshot of this version
+     */
+    public static ExperimentSnapshot open(Path file) throws IOException {
+        MappedFile mapped = MappedFile.map(file);
+        if (mapped.size() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an experiment snapshot");
+        }
+        int version = mapped.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(String.format("Snapshot %s has version %d, expected %d, export it again",
+                    file, version, VERSION));
+        }
+        final long stringsOffset = mapped.getLong(8);
+        long position = mapped.getLong(16);
+
+        Map<Integer, GameEntry> games = new LinkedHashMap<>();
+        int numGames = mapped.getInt(position);
+        position += Integer.BYTES;
+        for (int i = 0; i < numGames; i++) {
+            var entry = new GameEntry();
+            entry.id = mapped.getInt(position);
+            entry.scenario = mapped.getInt(position + 4);
+            entry.architect = mapped.getInt(position + 8);
+            entry.playerName = mapped.getInt(position + 12);
+            entry.clientIp = mapped.getInt(position + 16);
+            entry.eventsOffset = mapped.getLong(position + 20);
+            entry.numEvents = mapped.getInt(position + 28);
+            entry.questionsOffset = mapped.getLong(position + 32);
+            entry.numQuestions = mapped.getInt(position + 40);
+            position += GAME_ENTRY_SIZE;
+            games.put(entry.id, entry);
+        }
+        logger.info("Opened snapshot {} with {} games", file, numGames);
+        return new ExperimentSnapshot(mapped, stringsOffset, games);
+    }
+
+    /**
+     * @return the table of all strings in the snapshot, the message IDs of the events
+     *     returned by {@link #getEvents(int)} refer to it
+     */
+    @Override
+    public StringTable getStrings() {
+        return strings;
+    }
+
+    @Override
+    public Stream<GameMetadata> streamGames() {
+        return games.keySet().stream().map(this::getGame);
+    }
+
+    @Override
+    public GameMetadata getGame(int gameId) {
+        GameEntry entry = games.get(gameId);
+        if (entry == null) {
+            return null;
+        }
+        return new GameMetadata(entry.id, getString(entry.scenario), getString(entry.architect),
+                getString(entry.playerName), getString(entry.clientIp));
+    }
+
+    /**
+     * Decodes the GAME_LOGS of one game from the mapped file.
+     */
+    @Override
+    public GameEvents getEvents(int gameId) {
+        GameEntry entry = getEntry(gameId);
+        int n = entry.numEvents;
+        long position = entry.eventsOffset;
+        final long[] ids = file.getLongs(position, n);
+        position += (long) Long.BYTES * n;
+        final byte[] types = file.getBytes(position, n);
+        position += n;
+        long[] timestamps = file.getLongs(position, n);
+        position += (long) Long.BYTES * n;
+        int[][] columns = new int[4][];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = file.getInts(position, n);
+            position += (long) Integer.BYTES * n;
+        }
+        return new GameEvents(gameId, strings, n, ids, types, timestamps,
+                columns[0], columns[1], columns[2], columns[3]);
+    }
+
+    @Override
+    public Stream<GameEvents> streamEvents(Collection<Integer> gameIds) {
+        return gameIds.stream().map(this::getEvents);
+    }
+
+    /**
+     * Takes the sizes from the GAMES section, without reading the logs.
+     */
+    @Override
+    public Map<Integer, Integer> getLogSizes() {
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (GameEntry entry : games.values()) {
+            if (entry.numEvents > 0) {
+                sizes.put(entry.id, entry.numEvents);
+            }
+        }
+        return sizes;
+    }
+
+    @Override
+    public List<Pair<String, String>> getQuestionnaire(int gameId) {
+        GameEntry entry = getEntry(gameId);
+        int[] strings = file.getInts(entry.questionsOffset, 2 * entry.numQuestions);
+        List<Pair<String, String>> result = new ArrayList<>(entry.numQuestions);
+        for (int i = 0; i < entry.numQuestions; i++) {
+            result.add(new Pair<>(getString(strings[2 * i]), getString(strings[2 * i + 1])));
+        }
+        return result;
+    }
+
+    private GameEntry getEntry(int gameId) {
+        GameEntry entry = games.get(gameId);
+        if (entry == null) {
+            throw new IllegalArgumentException("No game with ID " + gameId + " in snapshot");
+        }
+        return entry;
+    }
+
+    private String getString(int id) {
+        return id == NULL ? null : strings.get(id);
+    }
+
+    /**
+     * Writes a snapshot of all games of the given source, usually the database, to the given file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void export(GameLogSource source, Path file) throws IOException {
+        StringTable strings = new StringTable();
+        Map<Integer, GameEntry> games = new LinkedHashMap<>();
+        source.streamGames().forEach((game) -> {
+            var entry = new GameEntry();
+            entry.id = game.getId();
+            entry.scenario = intern(strings, game.getScenario());
+            entry.architect = intern(strings, game.getArchitect());
+            entry.playerName = intern(strings, game.getPlayerName());
+            entry.clientIp = intern(strings, game.getClientIp());
+            games.put(entry.id, entry);
+        });
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new ChannelOutput(channel, HEADER_SIZE);
+
+            try {
+                source.scanEvents((events) -> {
+                    // skip games that were started after the GAMES table was read
+                    GameEntry entry = games.get(events.gameId);
+                    if (entry == null) {
+                        return;
+                    }
+                    try {
+                        writeEvents(out, entry, events, strings);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            QuestionnaireTable questionnaires = source.getQuestionnaires();
+            for (GameEntry entry : games.values()) {
+                entry.questionsOffset = out.position();
+                for (var qa : questionnaires.get(entry.id).getQuestionnaire()) {
+                    out.putInt(intern(strings, qa.getFirst()));
+                    out.putInt(intern(strings, qa.getSecond()));
+                    entry.numQuestions++;
+                }
+            }
+
+            long[] stringOffsets = new long[strings.size()];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = out.position();
+                byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+            final long stringsOffset = out.position();
+            out.putInt(stringOffsets.length);
+            for (long offset : stringOffsets) {
+                out.putLong(offset);
+            }
+
+            final long gamesOffset = out.position();
+            out.putInt(games.size());
+            for (GameEntry entry : games.values()) {
+                out.putInt(entry.id);
+                out.putInt(entry.scenario);
+                out.putInt(entry.architect);
+                out.putInt(entry.playerName);
+                out.putInt(entry.clientIp);
+                out.putLong(entry.eventsOffset);
+                out.putInt(entry.numEvents);
+                out.putLong(entry.questionsOffset);
+                out.putInt(entry.numQuestions);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(stringsOffset).putLong(gamesOffset).flip();
+            channel.write(header, 0);
+            logger.info("Wrote snapshot of {} games and {} strings to {}", games.size(),
+                    strings.size(), file);
+        }
+    }
+
+    private static int intern(StringTable strings, String string) {
+        return string == null ? NULL : strings.intern(string);
+    }
+
+    private static void writeEvents(ChannelOutput out, GameEntry entry, GameEvents events,
+                                    StringTable strings) throws IOException {
+        entry.eventsOffset = out.position();
+        entry.numEvents = events.size;
+        for (int i = 0; i < events.size; i++) {
+            out.putLong(events.ids[i]);
+        }
+        out.put(events.types);
+        for (int i = 0; i < events.size; i++) {
+            out.putLong(events.timestamps[i]);
+        }
+        for (int[] column : List.of(events.xs, events.ys, events.zs)) {
+            for (int value : column) {
+                out.putInt(value);
+            }
+        }
+        // the messages refer to the string table of the source, translate them to ours
+        for (int i = 0; i < events.size; i++) {
+            out.putInt(intern(strings, events.getMessage(i)));
+        }
+    }
+
+    /**
+     * Buffered sequential writer on a file channel that keeps track of the file position.
+     */
+    private static class ChannelOutput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private long position;
+
+        ChannelOutput(FileChannel channel, long start) {
+            this.channel = channel;
+            this.position = start;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package de.saar.minecraft.analysis;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.saar.coli.minecraft.relationextractor.Block;
+import de.saar.minecraft.broker.db.tables.records.GameLogsRecord;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Column store for the GAME_LOGS entries of a single game, ordered by log ID.
+ *
+ * <p>Each event is one index into the parallel arrays below.  Block events keep their
+ * coordinates in the x/y/z columns; all other events keep their message as an ID into the
+ * {@link StringTable} shared by all games.  Timestamps are stored as epoch milliseconds
+ * of the (zone-less) database time, so differences between them are exact.</p>
+ */
+public class GameEvents {
+    /** marks events without a message, i.e. block events */
+    static final int NO_MESSAGE = -1;
+
+    private static final Logger logger = LogManager.getLogger(GameEvents.class);
+
+    final int gameId;
+    final StringTable strings;
+    final int size;
+    final long[] ids;
+    final byte[] types;
+    final long[] timestamps;
+    final int[] xs;
+    final int[] ys;
+    final int[] zs;
+    final int[] messages;
+
+    /** permutation of the event indices ordered by (timestamp, id), computed on first use */
+    private int[] timeOrder = null;
+
+    /** the parsed TextMessages by event index, null for other events; parsed on first use */
+    private ParsedInstruction[] instructions = null;
+
+    GameEvents(int gameId, StringTable strings, int size, long[] ids, byte[] types, long[] timestamps,
+               int[] xs, int[] ys, int[] zs, int[] messages) {
+        this.gameId = gameId;
+        this.strings = strings;
+        this.size = size;
+        this.ids = ids;
+        this.types = types;
+        this.timestamps = timestamps;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.messages = messages;
+    }
+
+    /**
+     * Builds the event store from GAME_LOGS records.  The records have to be ordered by ID.
+     */
+    public static GameEvents fromRecords(int gameId, Iterable<GameLogsRecord> records,
+                                         StringTable strings) {
+        var builder = new Builder(gameId, strings);
+        for (GameLogsRecord record : records) {
+            builder.add(record.getId(), record.getMessageType(), record.getMessage(),
+                    record.getTimestamp());
+        }
+        return builder.build();
+    }
+
+    public int getGameId() {
+        return gameId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public EventType getType(int i) {
+        return EventType.fromCode(types[i]);
+    }
+
+    public LocalDateTime getTime(int i) {
+        return toLocalDateTime(timestamps[i]);
+    }
+
+    public Block getBlock(int i) {
+        return new Block(xs[i], ys[i], zs[i]);
+    }
+
+    /**
+     * @return the message of the event or null for block events
+     */
+    public String getMessage(int i) {
+        return messages[i] == NO_MESSAGE ? null : strings.get(messages[i]);
+    }
+
+    /**
+     * @return true if the event has a message containing the given string
+     */
+    public boolean messageContains(int i, String part) {
+        return messages[i] != NO_MESSAGE && strings.get(messages[i]).contains(part);
+    }
+
+    /**
+     * @return the MessageMarkers contained in the message of the event, 0 for block events
+     */
+    public long getMarkers(int i) {
+        return messages[i] == NO_MESSAGE ? 0 : strings.getMarkers(messages[i]);
+    }
+
+    public boolean hasMarker(int i, MessageMarker marker) {
+        return marker.in(getMarkers(i));
+    }
+
+    /**
+     * @return the index of the first event whose message contains the marker, -1 if none
+     */
+    public int indexOfMarker(MessageMarker marker) {
+        for (int i = 0; i < size; i++) {
+            if (hasMarker(i, marker)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first event whose message contains the given string, -1 if none
+     */
+    public int indexOfMessage(String part) {
+        for (int i = 0; i < size; i++) {
+            if (messageContains(i, part)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the event indices ordered by timestamp; events with the same timestamp
+     *     stay in log order
+     */
+    public synchronized int[] timeOrder() {
+        if (timeOrder == null) {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = timestamps[i - 1] <= timestamps[i];
+            }
+            if (sorted) {
+                timeOrder = new int[size];
+                Arrays.setAll(timeOrder, (i) -> i);
+            } else {
+                // the sort is stable, so equal timestamps keep their ID order
+                timeOrder = IntStream.range(0, size)
+                        .boxed()
+                        .sorted((a, b) -> Long.compare(timestamps[a], timestamps[b]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+            }
+        }
+        return timeOrder;
+    }
+
+    /**
+     * @return the events with an ID above the given one, this log itself if all of them are
+     */
+    public GameEvents after(long logId) {
+        int first = 0;
+        while (first < size && ids[first] <= logId) {
+            first++;
+        }
+        if (first == 0) {
+            return this;
+        }
+        var builder = new Builder(gameId, strings);
+        for (int i = first; i < size; i++) {
+            builder.add(ids[i], getType(i), timestamps[i], xs[i], ys[i], zs[i], messages[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param later events of the same game, e.g. those written since this log was loaded.  Rows
+     *     whose transaction committed late can have lower IDs than rows of this log.
+     * @return the events of both logs merged by ID, where the rows this log already has are
+     *     taken from it; this log itself if the other one has no new rows
+     */
+    public GameEvents append(GameEvents later) {
+        int numNew = 0;
+        for (int i = 0, j = 0; j < later.size; j++) {
+            while (i < size && ids[i] < later.ids[j]) {
+                i++;
+            }
+            if (i == size || ids[i] != later.ids[j]) {
+                numNew++;
+            }
+        }
+        if (numNew == 0) {
+            return this;
+        }
+        var builder = new Builder(gameId, strings);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < later.size) {
+            if (j == later.size || (i < size && ids[i] <= later.ids[j])) {
+                if (j < later.size && ids[i] == later.ids[j]) {
+                    j++;
+                }
+                builder.add(ids[i], getType(i), timestamps[i], xs[i], ys[i], zs[i], messages[i]);
+                i++;
+            } else {
+                builder.add(later.ids[j], later.getType(j), later.timestamps[j], later.xs[j], later.ys[j],
+                        later.zs[j], later.messages[j]);
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the parsed TextMessage at index i, null if the event is no TextMessage
+     */
+    public ParsedInstruction getInstruction(int i) {
+        return parseInstructions()[i];
+    }
+
+    /**
+     * @return the parsed TextMessages of the game in log order
+     */
+    public List<ParsedInstruction> getInstructions() {
+        List<ParsedInstruction> result = new ArrayList<>();
+        for (ParsedInstruction instruction : parseInstructions()) {
+            if (instruction != null) {
+                result.add(instruction);
+            }
+        }
+        return result;
+    }
+
+    private synchronized ParsedInstruction[] parseInstructions() {
+        if (instructions == null) {
+            instructions = new ParsedInstruction[size];
+            for (int i = 0; i < size; i++) {
+                if (types[i] == EventType.TEXT_MESSAGE.code && messages[i] != NO_MESSAGE) {
+                    instructions[i] = ParsedInstruction.parse(i, timestamps[i], getMessage(i), strings);
+                }
+            }
+        }
+        return instructions;
+    }
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    /**
+     * Collects events one at a time, growing the columns as needed.
+     */
+    public static class Builder {
+        private final int gameId;
+        private final StringTable strings;
+        private int size = 0;
+        private long[] ids = new long[64];
+        private byte[] types = new byte[64];
+        private long[] timestamps = new long[64];
+        private int[] xs = new int[64];
+        private int[] ys = new int[64];
+        private int[] zs = new int[64];
+        private int[] messages = new int[64];
+
+        public Builder(int gameId, StringTable strings) {
+            this.gameId = gameId;
+            this.strings = strings;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        /**
+         * Adds one GAME_LOGS entry.  Entries have to be added in ID order.
+         */
+        public Builder add(long id, String messageType, String message, LocalDateTime timestamp) {
+            EventType type = EventType.fromMessageType(messageType);
+            if (type.isBlockEvent()) {
+                JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+                add(id, type, toEpochMillis(timestamp),
+                        getCoordinate(json, "x", timestamp),
+                        getCoordinate(json, "y", timestamp),
+                        getCoordinate(json, "z", timestamp),
+                        NO_MESSAGE);
+            } else {
+                add(id, type, toEpochMillis(timestamp), 0, 0, 0, strings.intern(message));
+            }
+            return this;
+        }
+
+        /**
+         * Adds one event that is already in column form.
+         */
+        public Builder add(long id, EventType type, long timestamp, int x, int y, int z, int message) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                types = Arrays.copyOf(types, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                zs = Arrays.copyOf(zs, capacity);
+                messages = Arrays.copyOf(messages, capacity);
+            }
+            ids[size] = id;
+            types[size] = type.code;
+            timestamps[size] = timestamp;
+            xs[size] = x;
+            ys[size] = y;
+            zs[size] = z;
+            messages[size] = message;
+            size++;
+            return this;
+        }
+
+        public GameEvents build() {
+            return new GameEvents(gameId, strings, size,
+                    Arrays.copyOf(ids, size),
+                    Arrays.copyOf(types, size),
+                    Arrays.copyOf(timestamps, size),
+                    Arrays.copyOf(xs, size),
+                    Arrays.copyOf(ys, size),
+                    Arrays.copyOf(zs, size),
+                    Arrays.copyOf(messages, size));
+        }
+
+        /**
+         * If Block logs are incomplete, the missing values are the default 0.
+         * This should only occur for games that were played before
+         * TODO: date of setting up infrastructure commit 96b2fde on the server
+         */
+        private static int getCoordinate(JsonObject json, String name, LocalDateTime timestamp) {
+            if (json.has(name)) {
+                return json.get(name).getAsInt();
+            }
+            logger.error("Missing {} value for block at {}: {}", name, json, timestamp);
+            return 0;
+        }
+    }
+}
@@ -1,33 +1,20 @@
 package de.saar.minecraft.analysis;
 
-import static de.saar.minecraft.broker.db.Tables.GAMES;
-import static de.saar.minecraft.broker.db.Tables.GAME_LOGS;
 import static java.time.temporal.ChronoUnit.MILLIS;
 import static java.time.temporal.ChronoUnit.SECONDS;
 
-import com.google.common.collect.HashMultiset;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import de.saar.coli.minecraft.relationextractor.Block;
-import de.saar.minecraft.broker.db.Tables;
-import de.saar.minecraft.broker.db.tables.records.GameLogsRecord;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.NotImplementedException;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.math3.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jooq.DSLContext;
-import org.jooq.Record1;
-import org.jooq.Result;
 
 
 /**
@@ -41,34 +28,319 @@ import org.jooq.Result;
  * in the wrong order for some reason.  Using a multiset means we now have one block there
  * (1+1-1=1) instead of zero (the second placement was ignored with a set as that block already
  * existed in the world).  So this is a workaround for a very rare event ordering bug somewhere else.
+ *
+ * <p>The cached results are guarded by a ReentrantLock rather than synchronized methods: they
+ * are loaded from the source while the lock is held, and a virtual thread that blocks on a
+ * monitor would pin its carrier thread during the query.</p>
  */
 public class GameInformation {
     int gameId;
-    DSLContext jooq;
+    GameLogSource source;
+    AnalysisMetrics metrics;
     boolean countDestroyedAsMistake;
     List<Pair<String, HLOInformation>> hloInformation = null;
-    List<Pair<String, Integer>> instructionDurations = null;
+    List<Pair<ParsedInstruction, Integer>> instructionDurations = null;
+
+    /**
+     * The GAME_LOGS of this game, loaded on first use.
+     */
+    private GameEvents events = null;
 
     /**
      * The ID of the log message showing that the user was successful.
      */
-    final long successMessageID;
+    private Long successMessageID = null;
+
+    /**
+     * The analyzers of the single pass over the log, see analyzeLog().
+     */
+    private BlockDurationAnalyzer blockDurations = null;
+    private InstructionDurationAnalyzer instructions = null;
+    private MistakeCountAnalyzer mistakes = null;
+    private InstructionLevelAnalyzer instructionLevel = null;
+    private HLOAnalyzer hlo = null;
+    private GameLogPass pass = null;
+    private boolean logAnalyzed = false;
+
+    /**
+     * The QUESTIONNAIRES of this game, loaded on first use.
+     */
+    private QuestionnaireTable.Answers questionnaire = null;
+
+    /**
+     * The counters of this game if the source computed them for all games, null otherwise.
+     */
+    private GameSummary summary = null;
+
+    /**
+     * The GAMES row of this game, loaded on first use.
+     */
+    private GameMetadataTable metadata = null;
+    private int metadataRow;
+
+    /**
+     * The checkpointed replay of the block events, built on first use.
+     */
+    private WorldStateIndex worldState = null;
 
     private static final Logger logger = LogManager.getLogger(GameInformation.class);
 
-    public GameInformation(int gameId, DSLContext jooq) {
+    /**
+     * Guards the cached fields above.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public GameInformation(int gameId, GameLogSource source) {
+        this(gameId, source, new AnalysisMetrics());
+    }
+
+    public GameInformation(int gameId, GameLogSource source, AnalysisMetrics metrics) {
         this.gameId = gameId;
-        this.jooq = jooq;
+        this.source = source;
+        this.metrics = metrics;
         this.countDestroyedAsMistake = true;
-        Long mid = jooq.select(GAME_LOGS.ID)
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.MESSAGE.contains("\"newGameState\": \"SuccessfullyFinished\""))
-                .fetchOne(GAME_LOGS.ID);
-        if (mid == null) {
-            successMessageID = Long.MAX_VALUE;
-        } else {
-            successMessageID = mid;
+    }
+
+    /**
+     * @return the event store of this game, the log is fetched from the source on first use
+     */
+    public GameEvents getEvents() {
+        lock.lock();
+        try {
+            metrics.recordCacheAccess("events", events != null);
+            if (events == null) {
+                events = source.getEvents(gameId);
+            }
+            return events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the log of this game if it was already fetched together with other games,
+     * see GameLogSource.streamEvents.
+     */
+    void setEvents(GameEvents events) {
+        lock.lock();
+        try {
+            this.events = events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the GAME_LOGS rows written since the log of this game was loaded, see
+     * ExperimentAnalysis.poll().  Rows the log already has are ignored, rows that committed
+     * late are merged in by ID.  If the new rows come after all others in both ID and time
+     * order and do not change whether the game was successful, the log pass continues with
+     * them; otherwise everything is computed from the log again on next use.
+     *
+     * @param newEvents the new rows of this game
+     * @return true if the log changed
+     */
+    boolean appendEvents(GameEvents newEvents) {
+        lock.lock();
+        try {
+            if (events == null) {
+                // the new rows are fetched with the rest of the log on first use
+                return true;
+            }
+            GameEvents previous = events;
+            events = previous.append(newEvents);
+            if (events == previous) {
+                return false;
+            }
+            long previousSuccess = getSuccessMessageID();
+            if (previousSuccess == Long.MAX_VALUE) {
+                // the new rows may contain the success message
+                successMessageID = null;
+            }
+            // the counters of the source do not include the new rows
+            summary = null;
+            worldState = null;
+            instructionDurations = null;
+            hloInformation = null;
+            // the pass has visited the first previous.size events, which must keep their indices
+            boolean appended = Arrays.equals(previous.ids, 0, previous.size, events.ids, 0, previous.size)
+                    && Arrays.equals(previous.timeOrder(), 0, previous.size, events.timeOrder(), 0, previous.size);
+            if (logAnalyzed && hlo == null && appended && getSuccessMessageID() == previousSuccess) {
+                try (var phase = metrics.phase("logPass")) {
+                    pass.resume(events);
+                }
+            } else {
+                pass = null;
+                logAnalyzed = false;
+                hlo = null;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the questionnaire of this game if it was already fetched together with other games,
+     * see GameLogSource.getQuestionnaires.
+     */
+    void setQuestionnaire(QuestionnaireTable.Answers questionnaire) {
+        lock.lock();
+        try {
+            this.questionnaire = questionnaire;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the counters of this game if they were computed together with those of other games,
+     * see GameLogSource.getSummaries.  The counters are then not computed from the log.
+     */
+    void setSummary(GameSummary summary) {
+        lock.lock();
+        try {
+            this.summary = summary;
+            if (summary != null) {
+                successMessageID = summary.getSuccessMessageID();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the questionnaire of this game if the given one has other answers, e.g. the
+     * answers written at the end of the game, see ExperimentAnalysis.poll().
+     *
+     * @return true if the questionnaire changed
+     */
+    boolean updateQuestionnaire(QuestionnaireTable.Answers newQuestionnaire) {
+        lock.lock();
+        try {
+            if (getQuestionnaire().getQuestionnaire().equals(newQuestionnaire.getQuestionnaire())) {
+                return false;
+            }
+            questionnaire = newQuestionnaire;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private GameSummary getSummary() {
+        lock.lock();
+        try {
+            return summary;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the GAMES row of this game if it was already fetched together with other games.
+     */
+    void setMetadata(GameMetadataTable metadata) {
+        lock.lock();
+        try {
+            this.metadata = metadata;
+            this.metadataRow = metadata.rowOf(gameId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private GameMetadataTable getMetadata() {
+        lock.lock();
+        try {
+            if (metadata == null) {
+                setMetadata(new GameMetadataTable(List.of(source.getGame(gameId))));
+            }
+            return metadata;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private QuestionnaireTable.Answers getQuestionnaire() {
+        lock.lock();
+        try {
+            metrics.recordCacheAccess("questionnaire", questionnaire != null);
+            if (questionnaire == null) {
+                questionnaire = QuestionnaireTable.of(source.getQuestionnaire(gameId));
+            }
+            return questionnaire;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the ID of the log message showing that the user was successful,
+     *     Long.MAX_VALUE if there is none
+     */
+    public long getSuccessMessageID() {
+        lock.lock();
+        try {
+            if (successMessageID == null) {
+                var events = getEvents();
+                int index = events.indexOfMarker(MessageMarker.SUCCESS);
+                successMessageID = index < 0 ? Long.MAX_VALUE : events.ids[index];
+            }
+            return successMessageID;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of events before and including the success message
+     */
+    private int getNumEventsUntilSuccess() {
+        var events = getEvents();
+        long successId = getSuccessMessageID();
+        int n = 0;
+        while (n < events.size && events.ids[n] <= successId) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Loads everything the analysis of this game needs from the source and runs the log pass,
+     * so that later calls do not wait for the source.
+     */
+    void prepare() {
+        analyzeLog();
+    }
+
+    /**
+     * Runs all log-based analyses of this game in one pass over its events.  The results are
+     * kept, so the log is only iterated once no matter which of the getters is called first.
+     */
+    private void analyzeLog() {
+        lock.lock();
+        try {
+            metrics.recordCacheAccess("logPass", logAnalyzed);
+            if (logAnalyzed) {
+                return;
+            }
+            blockDurations = new BlockDurationAnalyzer();
+            instructions = new InstructionDurationAnalyzer();
+            mistakes = new MistakeCountAnalyzer(getSuccessMessageID());
+            instructionLevel = new InstructionLevelAnalyzer();
+            pass = new GameLogPass(getEvents());
+            pass.subscribe(blockDurations).subscribe(instructions).subscribe(mistakes).subscribe(instructionLevel);
+            if (wasSuccessful() && getArchitect() != null && HLOAnalyzer.supports(getScenario())) {
+                hlo = new HLOAnalyzer(getScenario());
+                pass.subscribe(hlo);
+            }
+            try (var phase = metrics.phase("logPass")) {
+                pass.run();
+            }
+            logAnalyzed = true;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -76,6 +348,29 @@ public class GameInformation {
      * for format details see saveCSV(File file) in AggregateInformation.java
      */
     public String getCSVHeader(String separator, int maxInstructionDurationsSize) {
+        return joinCSVHeader(getCSVHeaderStart(separator), getCSVHeaderEnd(separator), separator,
+                maxInstructionDurationsSize);
+    }
+
+    /**
+     * @return the header of data.csv from the part before and the part after the instruction
+     *     columns, see getCSVHeader
+     */
+    static String joinCSVHeader(String start, String end, String separator, int maxInstructionDurationsSize) {
+        var sb = new StringBuilder(start);
+        for (int i = 0; i < maxInstructionDurationsSize; i++) {
+            sb.append(separator);
+            sb.append("Instruction").append(i);
+            sb.append(separator);
+            sb.append("Time");
+        }
+        return sb.append(end).toString();
+    }
+
+    /**
+     * @return the header up to the instruction columns, which depend on the other games
+     */
+    String getCSVHeaderStart(String separator) {
         var sb = new StringBuilder();
         int qnum = 0;
         for (var qa : getNumericQuestions()
@@ -124,15 +419,15 @@ public class GameInformation {
                 sb.append("HLOmistakes").append(i);
             }
         }
+        return sb.toString();
+    }
 
-        for (int i = 0; i < maxInstructionDurationsSize; i++) {
-            sb.append(separator);
-            sb.append("Instruction").append(i);
-            sb.append(separator);
-            sb.append("Time");
-        }
-
-        for (int i = 0; i < getNumericQuestions().size(); i++) {
+    /**
+     * @return the header after the instruction columns, with the line break
+     */
+    String getCSVHeaderEnd(String separator) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < getQuestionnaire().getNumNumericQuestions(); i++) {
             sb.append(separator).append("Question").append(i);
         }
         return sb.append("\n").toString();
@@ -144,6 +439,38 @@ public class GameInformation {
      * @param separator the separator of the fields
      */
     public String getCSVLine(String separator, int maxInstructionDurationsSize) {
+        return joinCSVLine(getCSVLineStart(separator), getCSVInstructionFields(separator),
+                getCSVLineEnd(separator), separator, maxInstructionDurationsSize);
+    }
+
+    /**
+     * builds the line of a game in data.csv from its parts, see getCSVLine.
+     *
+     * @param instructionFields the instruction and duration of each instruction, separated by
+     *     the separator, or null if the game has no instruction columns
+     */
+    static String joinCSVLine(String start, List<String> instructionFields, String end, String separator,
+                              int maxInstructionDurationsSize) {
+        var sb = new StringBuilder(start);
+        if (instructionFields != null) {
+            for (int i = 0; i < maxInstructionDurationsSize; i++) {
+                sb.append(separator);
+                if (i < instructionFields.size()) {
+                    sb.append(instructionFields.get(i));
+                } else {
+                    sb.append("NA");
+                    sb.append(separator);
+                    sb.append("NA");
+                }
+            }
+        }
+        return sb.append(end).toString();
+    }
+
+    /**
+     * @return the line of this game up to the instruction columns
+     */
+    String getCSVLineStart(String separator) {
         var sb = new StringBuilder()
                 .append(gameId)
                 .append(separator)
@@ -166,13 +493,7 @@ public class GameInformation {
                 .append(getNumMistakes());
 
         if (wasSuccessful()) {
-            List<Pair<String, HLOInformation>> hloTimings;
-            if (this.hloInformation == null) {
-                hloTimings = getHLOInformation();
-                this.hloInformation = hloTimings;
-            } else {
-                hloTimings = this.hloInformation;
-            }
+            List<Pair<String, HLOInformation>> hloTimings = getHLOInformation();
             if (getScenario().equals("bridge")) {
                 for (int i = 0; i < 3; i++) {
                     sb.append(separator);
@@ -209,27 +530,34 @@ public class GameInformation {
                     }
                 }
             }
-
-            for (int i = 0; i < maxInstructionDurationsSize; i++) {
-                sb.append(separator);
-                if ((instructionDurations != null) && (i < instructionDurations.size())) {
-                    Pair<String, Integer> entry = instructionDurations.get(i);
-                    String instruction = entry.getFirst();
-                    String[] instructionList = instruction.split(",");
-                    String ins = instructionList[1];
-                    sb.append(ins.substring(27, ins.length() - 2));
-                    sb.append(separator);
-                    sb.append(entry.getSecond());
-                } else {
-                    sb.append("NA");
-                    sb.append(separator);
-                    sb.append("NA");
-                }
-            }
         } else {
             sb.append((separator + "NA").repeat(16));
         }
+        return sb.toString();
+    }
 
+    /**
+     * @return the instruction and duration of each instruction of a successful game as
+     *     fields of data.csv, null for unsuccessful games, which have no instruction columns
+     */
+    List<String> getCSVInstructionFields(String separator) {
+        if (!wasSuccessful()) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        if (instructionDurations != null) {
+            for (Pair<ParsedInstruction, Integer> entry : instructionDurations) {
+                fields.add(csvField(entry.getFirst().getText(), separator) + separator + entry.getSecond());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the line of this game after the instruction columns, with the line break
+     */
+    String getCSVLineEnd(String separator) {
+        var sb = new StringBuilder();
         getNumericQuestions().stream().sorted(Comparator.comparing(Pair::getFirst)).forEach(
             (x) -> {
                 sb.append(separator);
@@ -239,12 +567,26 @@ public class GameInformation {
         return sb.append("\n").toString();
     }
 
+    /**
+     * @return the value quoted as in RFC 4180 if it contains the separator, a quote or a line break
+     */
+    private static String csvField(String value, String separator) {
+        if (value.contains(separator) || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
 
     public String getScenario() {
-        return jooq.select(GAMES.SCENARIO)
-                .from(GAMES)
-                .where(GAMES.ID.eq(gameId))
-                .fetchOne(GAMES.SCENARIO);
+        return getMetadata().getScenario(metadataRow);
+    }
+
+    /**
+     * @return the code of the scenario in the metadata table set with setMetadata
+     */
+    public int getScenarioCode() {
+        return getMetadata().getScenarioCode(metadataRow);
     }
 
     enum InstructionLevel {
@@ -253,148 +595,121 @@ public class GameInformation {
 
     ;
 
+    /**
+     * @return the instruction level of this game, it is inferred once in the log pass
+     */
     public InstructionLevel inferInstructionLevel() {
-        var countTeach = jooq.selectCount()
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(this.gameId))
-                .and(GAME_LOGS.MESSAGE.contains("teach you"))
-                .fetchOne().component1();
-        if (countTeach > 0) {
-            return InstructionLevel.TEACHING;
-        }
-        var countHLO = jooq.selectCount()
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(this.gameId))
-                .and(GAME_LOGS.MESSAGE.contains("a wall")
-                        .or(GAME_LOGS.MESSAGE.contains("a floor")))
-                .fetchOne().component1();
-        if (countHLO > 0) {
-            return InstructionLevel.HIGHLEVEL;
-        }
-        return InstructionLevel.BLOCK;
+        analyzeLog();
+        return instructionLevel.getLevel();
     }
 
     public String getArchitect() {
-        return jooq.select(GAMES.ARCHITECT_INFO)
-                .from(GAMES)
-                .where(GAMES.ID.eq(gameId))
-                .fetchOne(GAMES.ARCHITECT_INFO);
+        return getMetadata().getArchitect(metadataRow);
+    }
+
+    /**
+     * @return the code of the architect in the metadata table set with setMetadata
+     */
+    public int getArchitectCode() {
+        return getMetadata().getArchitectCode(metadataRow);
     }
 
     public String getPlayerName() {
-        return jooq.select(GAMES.PLAYER_NAME)
-                .from(GAMES)
-                .where(GAMES.ID.equal(gameId))
-                .fetchOne(GAMES.PLAYER_NAME);
+        return getMetadata().getPlayerName(metadataRow);
     }
 
     public String getClientIp() {
-        return jooq.select(GAMES.CLIENT_IP)
-                .from(GAMES)
-                .where(GAMES.ID.equal(gameId))
-                .fetchOne(GAMES.CLIENT_IP);
+        return getMetadata().getClientIp(metadataRow);
     }
 
     /**
      * @return number of blocks placed before the experiment was successful
      */
     public int getNumBlocksPlaced() {
-        return jooq.selectCount()
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.ID.lessOrEqual(successMessageID))
-                .and(GAME_LOGS.MESSAGE_TYPE.eq("BlockPlacedMessage"))
-                .fetchOne(0, int.class);
+        var summary = getSummary();
+        if (summary != null) {
+            return summary.getNumBlocksPlaced();
+        }
+        return countEventsUntilSuccess(EventType.BLOCK_PLACED);
     }
 
     /**
      * @return number of blocks destroyed before the experiment was successful
      */
     public int getNumBlocksDestroyed() {
-        return jooq.selectCount()
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.ID.lessOrEqual(successMessageID))
-                .and(GAME_LOGS.MESSAGE_TYPE.eq("BlockDestroyedMessage"))
-                .fetchOne(0, int.class);
+        var summary = getSummary();
+        if (summary != null) {
+            return summary.getNumBlocksDestroyed();
+        }
+        return countEventsUntilSuccess(EventType.BLOCK_DESTROYED);
+    }
+
+    private int countEventsUntilSuccess(EventType type) {
+        var events = getEvents();
+        int n = getNumEventsUntilSuccess();
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (events.types[i] == type.code) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
      * @return number of times the architect messages about an incorrectly placed block
      */
     public int getNumMistakes() {
-        if (countDestroyedAsMistake) {
-            return jooq.selectCount()
-                    .from(GAME_LOGS)
-                    .where(GAME_LOGS.GAMEID.eq(gameId))
-                    .and(GAME_LOGS.ID.lessOrEqual(successMessageID))
-                    .and(GAME_LOGS.MESSAGE.contains("Not there! please remove that block again")
-                            .or(GAME_LOGS.MESSAGE.contains("Please add this block again.")))
-                    .fetchOne(0, int.class);
+        var summary = getSummary();
+        if (summary != null) {
+            return summary.getWrongBlocks() + (countDestroyedAsMistake ? summary.getDestroyedBlocks() : 0);
         }
-        return jooq.selectCount()
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.ID.lessOrEqual(successMessageID))
-                .and(GAME_LOGS.MESSAGE.contains("Not there! please remove that block again"))
-                .fetchOne(0, int.class);
+        analyzeLog();
+        return mistakes.wrongBlocks + (countDestroyedAsMistake ? mistakes.destroyedBlocks : 0);
     }
 
     /**
      * @return number of mistakes in a given timespan
      */
     public int getNumMistakesInTimespan(LocalDateTime begin, LocalDateTime end) {
+        return getMistakeTimeline().countBetween(begin, end);
+    }
 
-        Result<Record1<LocalDateTime>> result = jooq.select(GAME_LOGS.TIMESTAMP)
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.ID.lessOrEqual(successMessageID))
-                .and(GAME_LOGS.MESSAGE.contains("Not there! please remove that block again"))
-                .orderBy(GAME_LOGS.ID.asc())
-                .fetch();
-        int count = 0;
-        if (result.isNotEmpty()) {
-            for (int i = 0; i < result.size(); i++) {
-                LocalDateTime current = result.getValue(i, GAME_LOGS.TIMESTAMP);
-                if (current.isAfter(begin) && current.isBefore(end)) {
-                    count++;
-                }
-            }
-        }
-        return count;
+    /**
+     * @return the times of the messages about incorrectly placed blocks until the game was
+     *     successful
+     */
+    public EventTimeline getMistakeTimeline() {
+        analyzeLog();
+        return mistakes.wrongBlockTimeline;
     }
 
     /**
      * @return list of question-answer pairs where the answer is a number
      */
     public List<Pair<String, Integer>> getNumericQuestions() {
-        return jooq.selectFrom(Tables.QUESTIONNAIRES)
-                .where(Tables.QUESTIONNAIRES.GAMEID.equal(gameId))
-                .orderBy(Tables.QUESTIONNAIRES.ID.asc())
-                .fetchStream()
-                .filter((row) -> NumberUtils.isDigits(row.getAnswer()))
-                .map((row) -> new Pair<>(row.getQuestion(), Integer.parseInt(row.getAnswer())))
-                .collect(Collectors.toList());
+        return getQuestionnaire().getNumericQuestions();
+    }
+
+    /**
+     * @return true if the game has a questionnaire with at least one numeric answer
+     */
+    public boolean hasNumericQuestions() {
+        return getQuestionnaire().getNumNumericQuestions() > 0;
     }
 
     /**
      * @return list of question-answer pairs where the answer is not a number
      */
     public List<Pair<String, String>> getFreeformQuestions() {
-        return jooq.selectFrom(Tables.QUESTIONNAIRES)
-                .where(Tables.QUESTIONNAIRES.GAMEID.equal(gameId))
-                .orderBy(Tables.QUESTIONNAIRES.ID.asc())
-                .fetchStream()
-                .filter((row) -> !NumberUtils.isDigits(row.getAnswer()))
-                .map((row) -> new Pair<>(row.getQuestion(), row.getAnswer()))
-                .collect(Collectors.toList());
+        return getQuestionnaire().getFreeformQuestions();
     }
 
     /**
      * @return true if the game was successfully finished, false if stopped early
      */
     public boolean wasSuccessful() {
-        return successMessageID < Long.MAX_VALUE;
+        return getSuccessMessageID() < Long.MAX_VALUE;
     }
 
     /**
@@ -426,11 +741,8 @@ public class GameInformation {
      * @return the first timestamp of the game
      */
     public LocalDateTime getStartTime() {
-        return jooq.select(GAME_LOGS.TIMESTAMP)
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .orderBy(GAME_LOGS.ID.asc())
-                .fetchAny(GAME_LOGS.TIMESTAMP);
+        var events = getEvents();
+        return events.size == 0 ? null : events.getTime(0);
     }
 
     /**
@@ -438,45 +750,25 @@ public class GameInformation {
      */
     public LocalDateTime getSuccessTime() {
         assert wasSuccessful();
-        return jooq.select(GAME_LOGS.TIMESTAMP)
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.MESSAGE.contains("\"newGameState\": \"SuccessfullyFinished\""))
-                .fetchOne(GAME_LOGS.TIMESTAMP);
+        var events = getEvents();
+        int index = events.indexOfMarker(MessageMarker.SUCCESS);
+        return index < 0 ? null : events.getTime(index);
     }
 
     /**
      * @return the last Timestamp of the game
      */
     public LocalDateTime getEndTime() {
-        return jooq.select(GAME_LOGS.TIMESTAMP)
-                .from(GAME_LOGS)
-                .where(Tables.GAME_LOGS.GAMEID.equal(gameId))
-                .orderBy(Tables.GAME_LOGS.ID.desc())
-                .fetchAny(GAME_LOGS.TIMESTAMP);
+        var events = getEvents();
+        return events.size == 0 ? null : events.getTime(events.size - 1);
     }
 
     /**
      * Returns the times in ms between each block placed event (regardless of the instructions).
      */
     public List<Integer> getBlockPlacedDurations() {
-        Result<Record1<LocalDateTime>> result = jooq.select(GAME_LOGS.TIMESTAMP)
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.equal(gameId))
-                .and(GAME_LOGS.MESSAGE_TYPE.equal("BlockPlacedMessage"))
-                .orderBy(GAME_LOGS.ID.asc())
-                .fetch();
-
-        List<Integer> durations = new ArrayList<>();
-        if (result.isNotEmpty()) {
-            // add duration until first block placed
-            durations.add((int) getStartTime().until(result.getValue(0, GAME_LOGS.TIMESTAMP), MILLIS));
-            for (int i = 1; i < result.size(); i++) {
-                durations.add((int) result.getValue(i - 1, GAME_LOGS.TIMESTAMP)
-                        .until(result.getValue(i, GAME_LOGS.TIMESTAMP), MILLIS));
-            }
-        }
-        return durations;
+        analyzeLog();
+        return new ArrayList<>(blockDurations.durations);
     }
 
     /**
@@ -486,92 +778,13 @@ public class GameInformation {
      * should also be applicable for house scenarios, but not tested yet
      */
     public void getDurationPerInstruction() {
-        instructionDurations = new ArrayList<>();
-        var query = jooq.selectFrom(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.equal(gameId))
-                .orderBy(GAME_LOGS.ID.asc())
-                .fetch();
-        String oldInstruction = null;
-        LocalDateTime oldTimestamp = null;
-        int skip = 0;
-        int wrongBlocks = 0;
-        int greatMessages = 0;
-        int duration = 0;
-        boolean getTimeAndInstruction = false;
-        for (GameLogsRecord record : query) {
-            if (record.getMessageType().equals("TextMessage")) {
-                String instruction = record.getMessage();
-                if (getTimeAndInstruction) {
-                    getTimeAndInstruction = false;
-                    oldTimestamp = record.getTimestamp();
-                    oldInstruction = instruction;
-                }
-                if (instruction.contains("Welcome!")
-                        || instruction.contains("spacebar") || instruction.contains("correct")) {
-                    skip = 0;
-                    getTimeAndInstruction = true;
-                    continue;
-                } else {
-                    if (instruction.contains("Not there!")) {
-                        skip++;
-                        wrongBlocks++;
-                    } else if (instruction.contains("Great!")) {
-                        if (skip > 0) {
-                            greatMessages++;
-                            skip--;
-                        }
-                        if (instruction.contains("new") && instruction.contains("true")) {
-                            duration = (int) oldTimestamp.until(record.getTimestamp(), MILLIS);
-                            instructionDurations.add(new Pair(oldTimestamp + ": " + oldInstruction, duration));
-                            if (instruction.contains("teach") || instruction.contains("finished building")) {
-                                getTimeAndInstruction = true;
-                                continue;
-                            }
-                            oldTimestamp = record.getTimestamp();
-                            oldInstruction = instruction;
-                        }
-                    } else if (instruction.contains("Congratulations")) {
-                        duration = (int) oldTimestamp.until(record.getTimestamp(), MILLIS);
-                        instructionDurations.add(new Pair(oldTimestamp + ": " + oldInstruction, duration));
-                        break;
-                    }
-                }
-            }
-        }
-        if (greatMessages != wrongBlocks) {
-            System.out.println("Some wrong blocks weren't deleted");
-        }
-    }
-
-    /**
-     * reads a BlockMessage and returns a Block with the same coordinates
-     *
-     * @param record a GamesLogsRecord for a BlockPlaced- or BlockDestroyedMessage
-     */
-    private Block getBlockFromRecord(GameLogsRecord record) {
-        JsonObject json = JsonParser.parseString(record.getMessage()).getAsJsonObject();
-        // If Block logs are incomplete, the missing values are the default 0
-        // This should only occur for games that were played before
-        // TODO: date of setting up infrastructure commit 96b2fde on the server
-        int x = 0;
-        int y = 0;
-        int z = 0;
-        if (json.has("x")) {
-            x = json.get("x").getAsInt();
-        } else {
-            logger.error("Missing x value for block at {}: {}", json, record.getTimestamp());
+        lock.lock();
+        try {
+            analyzeLog();
+            instructionDurations = new ArrayList<>(instructions.durations);
+        } finally {
+            lock.unlock();
         }
-        if (json.has("y")) {
-            y = json.get("y").getAsInt();
-        } else {
-            logger.error("Missing y value for block at {}: {}", json, record.getTimestamp());
-        }
-        if (json.has("z")) {
-            z = json.get("z").getAsInt();
-        } else {
-            logger.error("Missing z value for block at {}: {}", json, record.getTimestamp());
-        }
-        return new Block(x, y, z);
     }
 
     public static class HLOGatherer {
@@ -606,146 +819,31 @@ public class GameInformation {
      * HLO starts when the previous HLO is finished (or for the first with the welcome message).</p>
      */
     public List<Pair<String, HLOInformation>> getHLOInformation() {
-        instructionDurations = new ArrayList<>();
+        lock.lock();
+        try {
+            metrics.recordCacheAccess("hloInformation", hloInformation != null);
+            if (hloInformation == null) {
+                hloInformation = computeHLOInformation();
+            }
+            return hloInformation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Pair<String, HLOInformation>> computeHLOInformation() {
         if (!wasSuccessful()) {
             return List.of();
         }
         if (getArchitect() == null) {
             return List.of();
         }
-        Result<GameLogsRecord> result = jooq.selectFrom(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.equal(gameId))
-                .orderBy(GAME_LOGS.TIMESTAMP.asc())
-                .fetch();
-
-        List<HLOGatherer> hloPlans;
-        HashMultiset<Block> presentBlocks = HashMultiset.create();
-        HashMap<Block, LocalDateTime> blocksTime = new HashMap<>();
-        String scenario = getScenario();
-        if (scenario.equals("house")) {
-            hloPlans = readHighlevelPlan("/de/saar/minecraft/domains/house-highlevel.plan")
-                    .stream()
-                    .map(HLOGatherer::new)
-                    .collect(Collectors.toList());
-            presentBlocks.addAll(readInitialWorld("/de/saar/minecraft/worlds/house.csv"));
-        } else if (scenario.equals("bridge")) {
-            hloPlans = readBlockPlan("/de/saar/minecraft/domains/bridge-block.plan").stream()
-                    .map(HLOGatherer::new)
-                    .collect(Collectors.toList());
-            presentBlocks.addAll(readInitialWorld("/de/saar/minecraft/worlds/bridge.csv"));
-        } else {
-            throw new NotImplementedException("Scenario {} is not implemented", scenario);
-        }
-
-        LocalDateTime firstInstructionTime = null;
-        int numMistakes = 0;
-
-        /* These two booleans implement a work-around for https://github.com/minecraft-saar/infrastructure/issues/19
-        Sometimes, a delete message and a create message are in the wrong order.  This workaround is for a specific
-        game where the player did a put-delete-put sequence for one location.  The result should be that there is a
-        block, but for some reason the sequence ended up as put-put-delete, meaning the world as we capture it here
-        does not have the block even though it was there during the game.  If that happens, we disable tracking
-        of deletions in that one game.
-        */
-        boolean dataExtracted = false;
-        boolean ignoreDestroyMessages = false;
-        LocalDateTime lastTimestamp = null;
-        int count = 1;
-        while (!dataExtracted) {
-            // go through the complete game and keep track of when instructions where given,
-            // blocks placed an HLO completed.
-            for (GameLogsRecord record : result) {
-                switch (record.getMessageType()) {
-                    case "BlockPlacedMessage":
-                        Block block = getBlockFromRecord(record);
-                        presentBlocks.add(block);
-                        if (blocksTime.containsKey(block)) {
-                            blocksTime.replace(block, record.getTimestamp());
-                        } else {
-                            blocksTime.put(block, record.getTimestamp());
-                        }
-                        break;
-                    case "BlockDestroyedMessage":
-                        if (!ignoreDestroyMessages) {
-                            presentBlocks.remove(getBlockFromRecord(record));
-                        }
-                        break;
-                    case "TextMessage":
-                        if (firstInstructionTime == null) {
-                            // the first *instruction* has a derivation tree, otherwise it is
-                            // a welcome message or similar.
-                            if (record.getMessage().contains("\\\"tree\\\":")) {
-                                firstInstructionTime = record.getTimestamp();
-                            }
-                        }
-                        if (record.getMessage().contains("Not there! please remove that block again")
-                                || record.getMessage().contains("Please add this block again.")) {
-                            numMistakes += 1;
-                        }
-                        if (record.getMessage().contains("Congratulations, you are done building")) {
-                            // the game is complete, i.e. the last HLO was completed.
-                            if (hloPlans.get(hloPlans.size() - 1).timestamp == null) {
-                                hloPlans.get(hloPlans.size() - 1).timestamp = record.getTimestamp();
-                                hloPlans.get(hloPlans.size() - 1).mistakes = numMistakes;
-                            } else if (hloPlans.get(hloPlans.size() - 2).timestamp == null) {
-                                //checkstyle needs something here
-                            } else if (hloPlans.get(hloPlans.size() - 2).timestamp
-                                            .until(hloPlans.get(hloPlans.size() - 1).timestamp, MILLIS) < 0) {
-                                hloPlans.get(hloPlans.size() - 1).timestamp = record.getTimestamp();
-                                hloPlans.get(hloPlans.size() - 1).mistakes = numMistakes;
-                            }
-                        }
-
-                        break;
-                    default:
-                        break;
-                }
-                // Check which HLOs are complete
-                for (HLOGatherer hlo : hloPlans) {
-                    if (hlo.timestamp == null) {
-                        if (presentBlocks.containsAll(hlo.blocks)) {
-                            hlo.timestamp = record.getTimestamp();
-                            hlo.mistakes = numMistakes;
-                        }
-                    }
-                }
-            }
-            count++;
-            // we are done when we either already had our second try or the data looks good.
-            if (ignoreDestroyMessages || hloPlans.stream().noneMatch((x) -> x.timestamp == null)) {
-                dataExtracted = true;
-            } else {
-                //there was some problem in the game with regard to block placement/destruction timing
-                //so we extract the latest time at which a block in the hlo was placed since this
-                // must be the time our system assumed the construction was finished,
-                // regardless of the current state of the minecraft world
-                if (wasSuccessful()) {
-                    for (HLOGatherer hlo : hloPlans) {
-                        if (hlo.timestamp == null) {
-                            LocalDateTime latestTimestamp = firstInstructionTime;
-                            for (Block b : hlo.blocks) {
-                                LocalDateTime tmp = blocksTime.get(b);
-                                if (tmp == null) {
-                                    continue;
-                                }
-                                if (latestTimestamp == null) {
-                                    latestTimestamp = tmp;
-                                } else if (latestTimestamp.isBefore(tmp)) {
-                                    latestTimestamp = tmp;
-                                }
-                            }
-                            hlo.timestamp = latestTimestamp;
-                        }
-                    }
-                }
-                if (hloPlans.stream().noneMatch((x) -> x.timestamp == null)) {
-                    dataExtracted = true;
-                } else {
-                    System.out.println("Some HLO is still not finished gameId: " + gameId);
-                }
-                ignoreDestroyMessages = true;
-            }
+        analyzeLog();
+        if (hlo == null) {
+            throw new NotImplementedException("Scenario {} is not implemented", getScenario());
         }
+        List<HLOGatherer> hloPlans = hlo.hloPlans;
+        LocalDateTime firstInstructionTime = hlo.firstInstructionTime;
 
         // As this was a successful game, all HLOs should have a time
         assert (hloPlans.stream().noneMatch((x) -> x.timestamp == null));
@@ -823,91 +921,17 @@ public class GameInformation {
     }
 
     /**
-     * @return list of coordinates of blocks for each highlevelobject
-     *     if instructions are per block
-     */
-    private List<List<Block>> readBlockPlan(String filename) {
-        InputStream inputStream = GameInformation.class.getResourceAsStream(filename);
-        String blockPlan = new BufferedReader(new InputStreamReader(inputStream))
-                .lines()
-                .collect(Collectors.joining("\n"));
-        String[] steps = blockPlan.split("\n");
-        List<Block> currentBlocks = new ArrayList<>();
-        List<List<Block>> hloPlans = new ArrayList<>();
-        for (String step : steps) {
-            if (step.contains("-starting")) {
-                currentBlocks = new ArrayList<>();
-            } else if (step.contains("!place-block")) {
-                String[] stepArray = step.split(" ");
-                int x = (int) Double.parseDouble(stepArray[2]);
-                int y = (int) Double.parseDouble(stepArray[3]);
-                int z = (int) Double.parseDouble(stepArray[4]);
-                currentBlocks.add(new Block(x, y, z));
-            } else if (step.contains("-finished")) {
-                hloPlans.add(currentBlocks);
-            }
-        }
-        return hloPlans;
-    }
-
-    /**
-     * @return list of coordinates of blocks for each highlevelobject
-     *     if instructions are highlevel
-     */
-    private List<List<Block>> readHighlevelPlan(String filename) {
-        InputStream inputStream = GameInformation.class.getResourceAsStream(filename);
-        String blockPlan = new BufferedReader(new InputStreamReader(inputStream))
-                .lines()
-                .collect(Collectors.joining("\n"));
-        String[] steps = blockPlan.split("\n");
-        List<Block> currentBlocks = new ArrayList<>();
-        List<List<Block>> hloPlans = new ArrayList<>();
-        for (String step : steps) {
-            if (step.contains("!build-")) {
-                if (!currentBlocks.isEmpty()) {
-                    hloPlans.add(currentBlocks);
-                }
-                currentBlocks = new ArrayList<>();
-            } else if (step.contains("!place-block-hidden")) {
-                String[] stepArray = step.split(" ");
-                int x = (int) Double.parseDouble(stepArray[2]);
-                int y = (int) Double.parseDouble(stepArray[3]);
-                int z = (int) Double.parseDouble(stepArray[4]);
-                currentBlocks.add(new Block(x, y, z));
-            }
-        }
-        hloPlans.add(currentBlocks);
-        return hloPlans;
-    }
-
-    /**
-     * @return set of blocks given in the inital world
+     * writes the results of the evaluation methods above to a provided markdown file.
      */
-    private Set<Block> readInitialWorld(String filename) {
-        Set<Block> worldBlocks = new HashSet<>();
-        InputStream inputStream = GameInformation.class.getResourceAsStream(filename);
-        String blockDescriptions = new BufferedReader(new InputStreamReader(inputStream))
-                .lines()
-                .collect(Collectors.joining("\n"));
-        String[] lines = blockDescriptions.split("\n");
-        for (String line : lines) {
-            if (line.startsWith("#")) {
-                continue;
-            }
-            String[] blockInfo = line.split(",");
-            int x = Integer.parseInt(blockInfo[0]);
-            int y = Integer.parseInt(blockInfo[1]);
-            int z = Integer.parseInt(blockInfo[2]);
-            worldBlocks.add(new Block(x, y, z));
-        }
-        return worldBlocks;
+    public void writeAnalysis(File file) throws IOException {
+        Files.writeString(file.toPath(), renderAnalysis());
     }
 
     /**
-     * writes the results of the evaluation methods above to a provided markdown file.
+     * @return the results of the evaluation methods above as markdown, see writeAnalysis
      */
-    public void writeAnalysis(File file) throws IOException {
-        FileWriter writer = new FileWriter(file);
+    public String renderAnalysis() {
+        StringBuilder writer = new StringBuilder();
         boolean wasSuccessful = wasSuccessful();
         String overview = "# Overview"
                 + "\n - Connection from: "
@@ -938,8 +962,7 @@ public class GameInformation {
                 + getNumBlocksDestroyed()
                 + "\n - Number of mistakes: "
                 + getNumMistakes();
-        writer.write(overview);
-        writer.flush();
+        writer.append(overview);
 
         List<Integer> blockDurations = getBlockPlacedDurations();
         StringBuilder durations = new StringBuilder("\n\n# Duration per block");
@@ -948,13 +971,7 @@ public class GameInformation {
         }
 
         if (wasSuccessful) {
-            List<Pair<String, HLOInformation>> hloDurations;
-            if (this.hloInformation == null) {
-                hloDurations = getHLOInformation();
-                this.hloInformation = hloDurations;
-            } else {
-                hloDurations = this.hloInformation;
-            }
+            List<Pair<String, HLOInformation>> hloDurations = getHLOInformation();
             durations.append("\n\n# Durations per High-level object");
             for (var pair : hloDurations) {
                 durations.append("\n - ").append(pair.getFirst());
@@ -965,16 +982,29 @@ public class GameInformation {
             getDurationPerInstruction();
             durations.append("\n\n# Durations per Instruction");
             for (var pair : instructionDurations) {
-                String instruction = pair.getFirst();
-                String[] instructionList = instruction.split(",");
-                String ins = instructionList[1].substring(27, instructionList[1].length() - 2);
-                durations.append("\n - ").append(ins);
+                durations.append("\n - ").append(pair.getFirst().getText());
                 durations.append(" : ").append(pair.getSecond());
                 durations.append("ms");
             }
         }
-        writer.write(durations.toString());
-        writer.close();
+        writer.append(durations);
+        return writer.toString();
+    }
+
+    /**
+     * @return the index of the world states of this game, built on first use
+     */
+    public WorldStateIndex getWorldState() {
+        lock.lock();
+        try {
+            metrics.recordCacheAccess("worldState", worldState != null);
+            if (worldState == null) {
+                worldState = new WorldStateIndex(getEvents());
+            }
+            return worldState;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -984,28 +1014,16 @@ public class GameInformation {
      * - all blocks that were placed but not destroyed again until the given timestamp
      */
     public void printBlocksUntilTimestamp(LocalDateTime time) {
-        Result<GameLogsRecord> result = jooq.selectFrom(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.equal(gameId))
-                .and(GAME_LOGS.MESSAGE_TYPE.equal("BlockPlacedMessage")
-                        .or(GAME_LOGS.MESSAGE_TYPE.equal("BlockDestroyedMessage")))
-                .and(GAME_LOGS.TIMESTAMP.lessThan(time))
-                .orderBy(GAME_LOGS.ID.asc())
-                .fetch();
+        var events = getEvents();
+        var index = getWorldState();
 
         List<Block> placedBlocks = new ArrayList<>();
         List<Block> destroyedBlocks = new ArrayList<>();
-        List<Block> presentBlocks = new ArrayList<>();
-
-        for (GameLogsRecord record : result) {
-            Block curBlock = getBlockFromRecord(record);
-            if (record.getMessageType().equals("BlockPlacedMessage")) {
-                placedBlocks.add(curBlock);
-                presentBlocks.add(curBlock);
-            } else if (record.getMessageType().equals("BlockDestroyedMessage")) {
-                destroyedBlocks.add(curBlock);
-                presentBlocks.remove(curBlock);
+        for (int i : index.getBlockEventsBefore(time)) {
+            if (events.types[i] == EventType.BLOCK_PLACED.code) {
+                placedBlocks.add(events.getBlock(i));
             } else {
-                throw new RuntimeException("Wrong message type " + record.getMessageType());
+                destroyedBlocks.add(events.getBlock(i));
             }
         }
 
@@ -1020,7 +1038,7 @@ public class GameInformation {
         }
 
         System.out.println("Present Blocks");
-        for (Block block : presentBlocks) {
+        for (Block block : index.getBlocksAt(time)) {
             System.out.println(" - " + block.toString());
         }
     }
@@ -0,0 +1,58 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterates over the log of one game once and hands every event to all subscribed
+ * visitors.  The events are visited in (timestamp, ID) order, see GameEvents.timeOrder(),
+ * which is the order in which they happened in the game.
+ */
+class GameLogPass {
+    private GameEvents events;
+    private final List<GameLogVisitor> visitors = new ArrayList<>();
+    /**
+     * The number of events in time order the visitors have seen.
+     */
+    private int visited = 0;
+
+    GameLogPass(GameEvents events) {
+        this.events = events;
+    }
+
+    GameLogPass subscribe(GameLogVisitor visitor) {
+        visitors.add(visitor);
+        return this;
+    }
+
+    void run() {
+        for (GameLogVisitor visitor : visitors) {
+            visitor.start(events);
+        }
+        visitRest();
+    }
+
+    /**
+     * Continues a finished pass with a log that has more events, e.g. those written since
+     * the pass ran.  The visitors only see the new events, so the events they have seen must
+     * keep their indices and still come first in the time order of the longer log.
+     *
+     * @param longer the log of the pass followed by the new events
+     */
+    void resume(GameEvents longer) {
+        events = longer;
+        visitRest();
+    }
+
+    private void visitRest() {
+        int[] timeOrder = events.timeOrder();
+        for (; visited < timeOrder.length; visited++) {
+            for (GameLogVisitor visitor : visitors) {
+                visitor.visit(events, timeOrder[visited]);
+            }
+        }
+        for (GameLogVisitor visitor : visitors) {
+            visitor.finish(events);
+        }
+    }
+}
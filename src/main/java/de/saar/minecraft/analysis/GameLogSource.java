@@ -0,0 +1,197 @@
+package de.saar.minecraft.analysis;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Where the analysis gets its experiment data from.  The analysis classes only talk to this
+ * interface, so the same analysis runs on a database, on a snapshot file or on data that
+ * was put together in memory.
+ */
+public interface GameLogSource {
+
+    /**
+     * Opens the source configured in the given configuration: the snapshot file if one is
+     * set, the database otherwise.
+     *
+     * @throws IOException if the snapshot cannot be opened or the database cannot be reached
+     */
+    static GameLogSource open(AnalysisConfiguration config) throws IOException {
+        if (config.getSnapshot() != null) {
+            return ExperimentSnapshot.open(Paths.get(config.getSnapshot()));
+        }
+        try {
+            return JdbcGameLogSource.connect(config);
+        } catch (SQLException e) {
+            throw new IOException("Could not connect to database at " + config.getUrl(), e);
+        }
+    }
+
+    /**
+     * Sets where the source records its queries.  Sources without queries ignore this.
+     */
+    default void setMetrics(AnalysisMetrics metrics) {
+    }
+
+    /**
+     * @return the table the messages of all events of this source refer to
+     */
+    StringTable getStrings();
+
+    /**
+     * @return all games ordered by ID
+     */
+    Stream<GameMetadata> streamGames();
+
+    /**
+     * @return the game with the given ID or null if there is none
+     */
+    GameMetadata getGame(int gameId);
+
+    /**
+     * @return the log of one game, ordered by log ID
+     */
+    GameEvents getEvents(int gameId);
+
+    /**
+     * Loads the logs of many games at once.  The stream is lazy, so implementations can
+     * fetch the games in batches while the stream is consumed.
+     *
+     * @return one GameEvents per game ID, in the order of the given IDs
+     */
+    Stream<GameEvents> streamEvents(Collection<Integer> gameIds);
+
+    /**
+     * Loads the logs of many games and hands each one to the consumer as soon as it is
+     * complete.  Unlike streamEvents, implementations may load several games at the same time,
+     * so the consumer can be called from several threads and in any order.  This
+     * implementation loads the games one after another with streamEvents.
+     */
+    default void extractEvents(Collection<Integer> gameIds, Consumer<GameEvents> consumer) {
+        streamEvents(gameIds).forEach(consumer);
+    }
+
+    /**
+     * Loads the logs of all games and hands them to the consumer one after another, ordered
+     * by game ID, e.g. to copy them somewhere else.  This implementation uses streamEvents;
+     * sources which can read all logs in one ordered pass should override this.
+     */
+    default void scanEvents(Consumer<GameEvents> consumer) {
+        var gameIds = streamGames()
+                .map(GameMetadata::getId)
+                .collect(Collectors.toList());
+        streamEvents(gameIds).forEach(consumer);
+    }
+
+    /**
+     * @return the highest ID in GAME_LOGS, 0 if there are no logs
+     */
+    default long getLastLogId() {
+        return getEventsAfter(0).stream()
+                .mapToLong((events) -> events.ids[events.size - 1])
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * Loads the GAME_LOGS rows with an ID above the given one, e.g. the rows written since the
+     * last call while an experiment is running.  This implementation goes through the logs of
+     * all games; sources which can select the new rows directly should override this.
+     *
+     * @return for every game with new rows one GameEvents with only those rows, ordered by
+     *     game ID
+     */
+    default List<GameEvents> getEventsAfter(long lastLogId) {
+        var gameIds = streamGames()
+                .map(GameMetadata::getId)
+                .collect(Collectors.toList());
+        List<GameEvents> result = new ArrayList<>();
+        streamEvents(gameIds).forEach((events) -> {
+            var newEvents = events.after(lastLogId);
+            if (newEvents.size() > 0) {
+                result.add(newEvents);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Counts the GAME_LOGS rows of every game, e.g. to split the games into parts of about the
+     * same size.  This implementation goes through the logs of all games.
+     *
+     * @return the number of rows of every game with a log, by game ID
+     */
+    default Map<Integer, Integer> getLogSizes() {
+        var gameIds = streamGames()
+                .map(GameMetadata::getId)
+                .collect(Collectors.toList());
+        Map<Integer, Integer> sizes = new HashMap<>();
+        streamEvents(gameIds).forEach((events) -> {
+            if (events.size() > 0) {
+                sizes.put(events.getGameId(), events.size());
+            }
+        });
+        return sizes;
+    }
+
+    /**
+     * @return the question-answer pairs of one game, ordered by questionnaire ID
+     */
+    List<Pair<String, String>> getQuestionnaire(int gameId);
+
+    /**
+     * Loads the questionnaires of all games at once.  Sources which can do this cheaper than
+     * one getQuestionnaire call per game should override this.
+     */
+    default QuestionnaireTable getQuestionnaires() {
+        var table = new QuestionnaireTable();
+        streamGames().forEach((game) -> table.add(game.getId(), getQuestionnaire(game.getId())));
+        return table;
+    }
+
+    /**
+     * @return the highest ID in QUESTIONNAIRES, 0 if there are no answers.  This implementation
+     *     returns 0, for sources whose answers have no IDs.
+     */
+    default long getLastQuestionnaireId() {
+        return 0;
+    }
+
+    /**
+     * Loads the questionnaires of the games with QUESTIONNAIRES rows above the given ID, e.g.
+     * the games that got answers since the last call while an experiment is running.  This
+     * implementation loads the questionnaires of all games; sources which can select the new
+     * rows by ID should override this.
+     *
+     * @return the complete questionnaires of those games
+     */
+    default QuestionnaireTable getQuestionnairesAfter(long lastQuestionnaireId) {
+        return getQuestionnaires();
+    }
+
+    /**
+     * Computes the counters of all games.  This implementation goes through the logs of all
+     * games; sources which can compute the counters without transferring the logs should
+     * override this.
+     *
+     * @return the summary of every game with a log, by game ID
+     */
+    default Map<Integer, GameSummary> getSummaries() {
+        var gameIds = streamGames()
+                .map(GameMetadata::getId)
+                .collect(Collectors.toList());
+        Map<Integer, GameSummary> summaries = new HashMap<>();
+        streamEvents(gameIds).forEach((events) -> summaries.put(events.getGameId(), GameSummary.of(events)));
+        return summaries;
+    }
+}
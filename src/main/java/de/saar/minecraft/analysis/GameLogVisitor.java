@@ -0,0 +1,27 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * An analysis that subscribes to the events of one game, see {@link GameLogPass}.
+ */
+interface GameLogVisitor {
+
+    /**
+     * Called once before the first event.
+     */
+    default void start(GameEvents events) {
+    }
+
+    /**
+     * Called for every event of the game.
+     *
+     * @param i the index of the event in the event store
+     */
+    void visit(GameEvents events, int i);
+
+    /**
+     * Called after the last event, and again if the pass is resumed with new events, see
+     * GameLogPass.resume(...).
+     */
+    default void finish(GameEvents events) {
+    }
+}
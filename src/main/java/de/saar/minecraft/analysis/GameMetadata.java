@@ -0,0 +1,44 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * The columns of a GAMES row that the analysis uses.
+ */
+public class GameMetadata {
+    private final int id;
+    private final String scenario;
+    private final String architect;
+    private final String playerName;
+    private final String clientIp;
+
+    public GameMetadata(int id, String scenario, String architect, String playerName,
+                        String clientIp) {
+        this.id = id;
+        this.scenario = scenario;
+        this.architect = architect;
+        this.playerName = playerName;
+        this.clientIp = clientIp;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * @return the ARCHITECT_INFO of the game, may be null
+     */
+    public String getArchitect() {
+        return architect;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public String getClientIp() {
+        return clientIp;
+    }
+}
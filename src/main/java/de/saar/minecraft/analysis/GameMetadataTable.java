@@ -0,0 +1,121 @@
+package de.saar.minecraft.analysis;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The GAMES rows of many games, loaded at once with GameLogSource.streamGames().  Scenario and
+ * architect are dictionary-encoded: every distinct value gets a small int code in the order of
+ * its first appearance, so filtering games by scenario or architect compares ints.
+ * A missing architect (null) is encoded like any other value.
+ */
+public class GameMetadataTable {
+    private final StringTable scenarios = new StringTable();
+    private final StringTable architects = new StringTable();
+    private final Map<Integer, Integer> rows = new HashMap<>();
+    private final int[] ids;
+    private final int[] scenarioCodes;
+    private final int[] architectCodes;
+    private final String[] playerNames;
+    private final String[] clientIps;
+
+    /**
+     * @param games the GAMES rows, their order is kept
+     */
+    public GameMetadataTable(List<GameMetadata> games) {
+        ids = new int[games.size()];
+        scenarioCodes = new int[games.size()];
+        architectCodes = new int[games.size()];
+        playerNames = new String[games.size()];
+        clientIps = new String[games.size()];
+        for (int row = 0; row < games.size(); row++) {
+            GameMetadata game = games.get(row);
+            ids[row] = game.getId();
+            scenarioCodes[row] = scenarios.intern(game.getScenario());
+            architectCodes[row] = architects.intern(game.getArchitect());
+            playerNames[row] = game.getPlayerName();
+            clientIps[row] = game.getClientIp();
+            rows.put(game.getId(), row);
+        }
+    }
+
+    /**
+     * @return the row of the given game, -1 if it is not in the table
+     */
+    public int rowOf(int gameId) {
+        return rows.getOrDefault(gameId, -1);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public int getScenarioCode(int row) {
+        return scenarioCodes[row];
+    }
+
+    public String getScenario(int row) {
+        return scenarios.get(scenarioCodes[row]);
+    }
+
+    public int getArchitectCode(int row) {
+        return architectCodes[row];
+    }
+
+    /**
+     * @return the ARCHITECT_INFO of the game in the given row, may be null
+     */
+    public String getArchitect(int row) {
+        return architects.get(architectCodes[row]);
+    }
+
+    public String getPlayerName(int row) {
+        return playerNames[row];
+    }
+
+    public String getClientIp(int row) {
+        return clientIps[row];
+    }
+
+    /**
+     * @return the number of distinct scenarios, codes are 0 to getNumScenarios() - 1
+     */
+    public int getNumScenarios() {
+        return scenarios.size();
+    }
+
+    public String getScenarioName(int code) {
+        return scenarios.get(code);
+    }
+
+    /**
+     * @return the code of the given scenario, -1 if no game has it
+     */
+    public int scenarioCode(String scenario) {
+        return scenarios.indexOf(scenario);
+    }
+
+    /**
+     * @return the number of distinct architects including null, codes are 0 to
+     *     getNumArchitects() - 1
+     */
+    public int getNumArchitects() {
+        return architects.size();
+    }
+
+    public String getArchitectName(int code) {
+        return architects.get(code);
+    }
+
+    /**
+     * @return the code of the given architect, -1 if no game has it
+     */
+    public int architectCode(String architect) {
+        return architects.indexOf(architect);
+    }
+}
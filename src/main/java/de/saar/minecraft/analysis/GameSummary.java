@@ -0,0 +1,75 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * The counters of one game that do not need its log once they are computed: the ID of the
+ * success message and the blocks and mistake messages until then.  GameLogSource.getSummaries()
+ * computes them for all games at once, the database does so without sending the logs.
+ */
+public class GameSummary {
+    private final long successMessageID;
+    private final int numBlocksPlaced;
+    private final int numBlocksDestroyed;
+    private final int wrongBlocks;
+    private final int destroyedBlocks;
+
+    /**
+     * @param successMessageID the ID of the success message, Long.MAX_VALUE if there is none
+     * @param wrongBlocks the number of "Not there!" messages
+     * @param destroyedBlocks the number of "Please add this block again." messages
+     */
+    public GameSummary(long successMessageID, int numBlocksPlaced, int numBlocksDestroyed,
+                       int wrongBlocks, int destroyedBlocks) {
+        this.successMessageID = successMessageID;
+        this.numBlocksPlaced = numBlocksPlaced;
+        this.numBlocksDestroyed = numBlocksDestroyed;
+        this.wrongBlocks = wrongBlocks;
+        this.destroyedBlocks = destroyedBlocks;
+    }
+
+    /**
+     * Computes the summary from the log of a game, counting like GameInformation and
+     * MistakeCountAnalyzer do.
+     */
+    public static GameSummary of(GameEvents events) {
+        int success = events.indexOfMarker(MessageMarker.SUCCESS);
+        long successMessageID = success < 0 ? Long.MAX_VALUE : events.ids[success];
+        int placed = 0;
+        int destroyed = 0;
+        int wrongBlocks = 0;
+        int destroyedBlocks = 0;
+        for (int i = 0; i < events.size && events.ids[i] <= successMessageID; i++) {
+            if (events.types[i] == EventType.BLOCK_PLACED.code) {
+                placed++;
+            } else if (events.types[i] == EventType.BLOCK_DESTROYED.code) {
+                destroyed++;
+            }
+            long markers = events.getMarkers(i);
+            if (MessageMarker.WRONG_BLOCK.in(markers)) {
+                wrongBlocks++;
+            } else if (MessageMarker.DESTROYED_BLOCK.in(markers)) {
+                destroyedBlocks++;
+            }
+        }
+        return new GameSummary(successMessageID, placed, destroyed, wrongBlocks, destroyedBlocks);
+    }
+
+    public long getSuccessMessageID() {
+        return successMessageID;
+    }
+
+    public int getNumBlocksPlaced() {
+        return numBlocksPlaced;
+    }
+
+    public int getNumBlocksDestroyed() {
+        return numBlocksDestroyed;
+    }
+
+    public int getWrongBlocks() {
+        return wrongBlocks;
+    }
+
+    public int getDestroyedBlocks() {
+        return destroyedBlocks;
+    }
+}
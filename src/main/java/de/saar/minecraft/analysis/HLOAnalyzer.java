@@ -0,0 +1,251 @@
+package de.saar.minecraft.analysis;
+
+import static java.time.temporal.ChronoUnit.MILLIS;
+
+import com.google.common.collect.HashMultiset;
+import de.saar.coli.minecraft.relationextractor.Block;
+import de.saar.minecraft.analysis.GameInformation.HLOGatherer;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.NotImplementedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Replays the world of a successful game and records when each HLO was completed, i.e. the
+ * walls in the house scenario and the floor and railings in the bridge scenario.
+ * See the GameInformation class comment for why the present blocks are kept in a multiset.
+ */
+class HLOAnalyzer implements GameLogVisitor {
+    private static final Logger logger = LogManager.getLogger(HLOAnalyzer.class);
+
+    final List<HLOGatherer> hloPlans;
+    /**
+     * The time of the first message with a derivation tree, null if there was none.
+     */
+    LocalDateTime firstInstructionTime = null;
+
+    private final HashMultiset<Block> presentBlocks = HashMultiset.create();
+    private final Map<Block, Long> blocksTime = new HashMap<>();
+    private int numMistakes = 0;
+
+    /* This boolean implements a work-around for https://github.com/minecraft-saar/infrastructure/issues/19
+    Sometimes, a delete message and a create message are in the wrong order.  This workaround is for a specific
+    game where the player did a put-delete-put sequence for one location.  The result should be that there is a
+    block, but for some reason the sequence ended up as put-put-delete, meaning the world as we capture it here
+    does not have the block even though it was there during the game.  If that happens, we replay the game a
+    second time without tracking deletions.
+    */
+    private boolean ignoreDestroyMessages = false;
+
+    HLOAnalyzer(String scenario) {
+        if (scenario.equals("house")) {
+            hloPlans = readHighlevelPlan("/de/saar/minecraft/domains/house-highlevel.plan")
+                    .stream()
+                    .map(HLOGatherer::new)
+                    .collect(Collectors.toList());
+            presentBlocks.addAll(readInitialWorld("/de/saar/minecraft/worlds/house.csv"));
+        } else if (scenario.equals("bridge")) {
+            hloPlans = readBlockPlan("/de/saar/minecraft/domains/bridge-block.plan").stream()
+                    .map(HLOGatherer::new)
+                    .collect(Collectors.toList());
+            presentBlocks.addAll(readInitialWorld("/de/saar/minecraft/worlds/bridge.csv"));
+        } else {
+            throw new NotImplementedException("Scenario {} is not implemented", scenario);
+        }
+    }
+
+    /**
+     * @return true if there are HLO plans for the given scenario
+     */
+    static boolean supports(String scenario) {
+        return scenario.equals("house") || scenario.equals("bridge");
+    }
+
+    /**
+     * Keeps track of when instructions where given, blocks placed and HLOs completed.
+     */
+    @Override
+    public void visit(GameEvents events, int i) {
+        long timestamp = events.timestamps[i];
+        switch (events.getType(i)) {
+            case BLOCK_PLACED:
+                Block block = events.getBlock(i);
+                presentBlocks.add(block);
+                blocksTime.put(block, timestamp);
+                break;
+            case BLOCK_DESTROYED:
+                if (!ignoreDestroyMessages) {
+                    presentBlocks.remove(events.getBlock(i));
+                }
+                break;
+            case TEXT_MESSAGE:
+                long markers = events.getMarkers(i);
+                if (firstInstructionTime == null) {
+                    // the first *instruction* has a derivation tree, otherwise it is
+                    // a welcome message or similar.
+                    if (MessageMarker.DERIVATION_TREE.in(markers)) {
+                        firstInstructionTime = GameEvents.toLocalDateTime(timestamp);
+                    }
+                }
+                if (MessageMarker.WRONG_BLOCK.in(markers) || MessageMarker.DESTROYED_BLOCK.in(markers)) {
+                    numMistakes += 1;
+                }
+                if (MessageMarker.DONE_BUILDING.in(markers)) {
+                    // the game is complete, i.e. the last HLO was completed.
+                    HLOGatherer last = hloPlans.get(hloPlans.size() - 1);
+                    HLOGatherer secondToLast = hloPlans.get(hloPlans.size() - 2);
+                    if (last.timestamp == null) {
+                        last.timestamp = GameEvents.toLocalDateTime(timestamp);
+                        last.mistakes = numMistakes;
+                    } else if (secondToLast.timestamp != null
+                            && secondToLast.timestamp.until(last.timestamp, MILLIS) < 0) {
+                        last.timestamp = GameEvents.toLocalDateTime(timestamp);
+                        last.mistakes = numMistakes;
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        // Check which HLOs are complete
+        for (HLOGatherer hlo : hloPlans) {
+            if (hlo.timestamp == null) {
+                if (presentBlocks.containsAll(hlo.blocks)) {
+                    hlo.timestamp = GameEvents.toLocalDateTime(timestamp);
+                    hlo.mistakes = numMistakes;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void finish(GameEvents events) {
+        if (isComplete()) {
+            return;
+        }
+        //there was some problem in the game with regard to block placement/destruction timing
+        //so we extract the latest time at which a block in the hlo was placed since this
+        // must be the time our system assumed the construction was finished,
+        // regardless of the current state of the minecraft world
+        for (HLOGatherer hlo : hloPlans) {
+            if (hlo.timestamp == null) {
+                LocalDateTime latestTimestamp = firstInstructionTime;
+                for (Block b : hlo.blocks) {
+                    Long tmp = blocksTime.get(b);
+                    if (tmp == null) {
+                        continue;
+                    }
+                    LocalDateTime time = GameEvents.toLocalDateTime(tmp);
+                    if (latestTimestamp == null || latestTimestamp.isBefore(time)) {
+                        latestTimestamp = time;
+                    }
+                }
+                hlo.timestamp = latestTimestamp;
+            }
+        }
+        if (isComplete() || ignoreDestroyMessages) {
+            return;
+        }
+        logger.warn("Some HLO is still not finished in game {}", events.getGameId());
+        // second try, this is the only case in which the log is iterated twice
+        ignoreDestroyMessages = true;
+        for (int i : events.timeOrder()) {
+            visit(events, i);
+        }
+    }
+
+    private boolean isComplete() {
+        return hloPlans.stream().noneMatch((x) -> x.timestamp == null);
+    }
+
+    /**
+     * @return list of coordinates of blocks for each highlevelobject
+     *     if instructions are per block
+     */
+    private static List<List<Block>> readBlockPlan(String filename) {
+        InputStream inputStream = HLOAnalyzer.class.getResourceAsStream(filename);
+        String blockPlan = new BufferedReader(new InputStreamReader(inputStream))
+                .lines()
+                .collect(Collectors.joining("\n"));
+        String[] steps = blockPlan.split("\n");
+        List<Block> currentBlocks = new ArrayList<>();
+        List<List<Block>> hloPlans = new ArrayList<>();
+        for (String step : steps) {
+            if (step.contains("-starting")) {
+                currentBlocks = new ArrayList<>();
+            } else if (step.contains("!place-block")) {
+                String[] stepArray = step.split(" ");
+                int x = (int) Double.parseDouble(stepArray[2]);
+                int y = (int) Double.parseDouble(stepArray[3]);
+                int z = (int) Double.parseDouble(stepArray[4]);
+                currentBlocks.add(new Block(x, y, z));
+            } else if (step.contains("-finished")) {
+                hloPlans.add(currentBlocks);
+            }
+        }
+        return hloPlans;
+    }
+
+    /**
+     * @return list of coordinates of blocks for each highlevelobject
+     *     if instructions are highlevel
+     */
+    private static List<List<Block>> readHighlevelPlan(String filename) {
+        InputStream inputStream = HLOAnalyzer.class.getResourceAsStream(filename);
+        String blockPlan = new BufferedReader(new InputStreamReader(inputStream))
+                .lines()
+                .collect(Collectors.joining("\n"));
+        String[] steps = blockPlan.split("\n");
+        List<Block> currentBlocks = new ArrayList<>();
+        List<List<Block>> hloPlans = new ArrayList<>();
+        for (String step : steps) {
+            if (step.contains("!build-")) {
+                if (!currentBlocks.isEmpty()) {
+                    hloPlans.add(currentBlocks);
+                }
+                currentBlocks = new ArrayList<>();
+            } else if (step.contains("!place-block-hidden")) {
+                String[] stepArray = step.split(" ");
+                int x = (int) Double.parseDouble(stepArray[2]);
+                int y = (int) Double.parseDouble(stepArray[3]);
+                int z = (int) Double.parseDouble(stepArray[4]);
+                currentBlocks.add(new Block(x, y, z));
+            }
+        }
+        hloPlans.add(currentBlocks);
+        return hloPlans;
+    }
+
+    /**
+     * @return set of blocks given in the inital world
+     */
+    private static Set<Block> readInitialWorld(String filename) {
+        Set<Block> worldBlocks = new HashSet<>();
+        InputStream inputStream = HLOAnalyzer.class.getResourceAsStream(filename);
+        String blockDescriptions = new BufferedReader(new InputStreamReader(inputStream))
+                .lines()
+                .collect(Collectors.joining("\n"));
+        String[] lines = blockDescriptions.split("\n");
+        for (String line : lines) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            String[] blockInfo = line.split(",");
+            int x = Integer.parseInt(blockInfo[0]);
+            int y = Integer.parseInt(blockInfo[1]);
+            int z = Integer.parseInt(blockInfo[2]);
+            worldBlocks.add(new Block(x, y, z));
+        }
+        return worldBlocks;
+    }
+}
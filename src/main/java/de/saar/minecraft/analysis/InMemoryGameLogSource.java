@@ -0,0 +1,136 @@
+package de.saar.minecraft.analysis;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Keeps all experiment data in memory.  It can be filled by hand, e.g. with fixtures for
+ * a specific event sequence, or by copying another source with {@link #copyOf(GameLogSource)}.
+ */
+public class InMemoryGameLogSource implements GameLogSource {
+    private final StringTable strings;
+    private final Map<Integer, GameMetadata> games = new TreeMap<>();
+    private final Map<Integer, GameEvents.Builder> builders = new HashMap<>();
+    private final Map<Integer, GameEvents> events = new HashMap<>();
+    private final Map<Integer, List<Pair<String, String>>> questionnaires = new HashMap<>();
+
+    public InMemoryGameLogSource() {
+        this(new StringTable());
+    }
+
+    private InMemoryGameLogSource(StringTable strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Loads all games of the given source into memory.
+     */
+    public static InMemoryGameLogSource copyOf(GameLogSource source) {
+        var copy = new InMemoryGameLogSource(source.getStrings());
+        source.streamGames().forEach(copy::addGame);
+        source.streamEvents(copy.games.keySet()).forEach((e) -> copy.events.put(e.gameId, e));
+        for (int gameId : copy.games.keySet()) {
+            copy.questionnaires.put(gameId, source.getQuestionnaire(gameId));
+        }
+        return copy;
+    }
+
+    public InMemoryGameLogSource addGame(GameMetadata game) {
+        games.put(game.getId(), game);
+        return this;
+    }
+
+    public InMemoryGameLogSource addGame(int id, String scenario, String architect) {
+        return addGame(new GameMetadata(id, scenario, architect, "player" + id, "127.0.0.1"));
+    }
+
+    /**
+     * Appends a log entry to a game.  Entries can also be added after the log was read, like
+     * the broker does while an experiment is running, and with a lower ID than entries added
+     * before, like rows whose transaction commits late; the log is ordered by ID.
+     */
+    public synchronized InMemoryGameLogSource addEvent(int gameId, long id, String messageType,
+                                                       String message, LocalDateTime timestamp) {
+        builders.computeIfAbsent(gameId, this::newBuilder)
+                .add(id, messageType, message, timestamp);
+        events.remove(gameId);
+        return this;
+    }
+
+    /**
+     * @return a builder holding the log of the game if it was copied from another source
+     */
+    private GameEvents.Builder newBuilder(int gameId) {
+        var builder = new GameEvents.Builder(gameId, strings);
+        var copied = events.get(gameId);
+        if (copied != null) {
+            for (int i = 0; i < copied.size; i++) {
+                builder.add(copied.ids[i], copied.getType(i), copied.timestamps[i], copied.xs[i], copied.ys[i],
+                        copied.zs[i], copied.messages[i]);
+            }
+        }
+        return builder;
+    }
+
+    public synchronized InMemoryGameLogSource addAnswer(int gameId, String question, String answer) {
+        questionnaires.computeIfAbsent(gameId, (g) -> new ArrayList<>())
+                .add(new Pair<>(question, answer));
+        return this;
+    }
+
+    @Override
+    public StringTable getStrings() {
+        return strings;
+    }
+
+    @Override
+    public Stream<GameMetadata> streamGames() {
+        return new ArrayList<>(games.values()).stream();
+    }
+
+    @Override
+    public GameMetadata getGame(int gameId) {
+        return games.get(gameId);
+    }
+
+    @Override
+    public synchronized GameEvents getEvents(int gameId) {
+        return events.computeIfAbsent(gameId, (g) -> {
+            var builder = builders.get(g);
+            return builder == null ? new GameEvents.Builder(g, strings).build() : inIdOrder(builder.build());
+        });
+    }
+
+    private GameEvents inIdOrder(GameEvents log) {
+        int[] order = IntStream.range(0, log.size)
+                .boxed()
+                .sorted(Comparator.comparingLong((i) -> log.ids[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        var builder = new GameEvents.Builder(log.gameId, strings);
+        for (int i : order) {
+            builder.add(log.ids[i], log.getType(i), log.timestamps[i], log.xs[i], log.ys[i], log.zs[i],
+                    log.messages[i]);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public Stream<GameEvents> streamEvents(Collection<Integer> gameIds) {
+        return gameIds.stream().map(this::getEvents);
+    }
+
+    @Override
+    public synchronized List<Pair<String, String>> getQuestionnaire(int gameId) {
+        return new ArrayList<>(questionnaires.getOrDefault(gameId, List.of()));
+    }
+}
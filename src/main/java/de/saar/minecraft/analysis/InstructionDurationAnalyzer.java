@@ -0,0 +1,85 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.math3.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects the instructions given to the user and the time in ms it took the user to complete
+ * each instruction.
+ * Currently only tested for bridge scenarios,
+ * should also be applicable for house scenarios, but not tested yet
+ */
+class InstructionDurationAnalyzer implements GameLogVisitor {
+    private static final Logger logger = LogManager.getLogger(InstructionDurationAnalyzer.class);
+
+    final List<Pair<ParsedInstruction, Integer>> durations = new ArrayList<>();
+    /**
+     * The index of the instruction that is currently being worked on, -1 if there is none yet.
+     */
+    private int current = -1;
+    private int skip = 0;
+    private int wrongBlocks = 0;
+    private int greatMessages = 0;
+    private boolean getTimeAndInstruction = false;
+    private boolean done = false;
+    /**
+     * Whether the warning about undeleted wrong blocks was logged, finish is called again
+     * whenever the pass is resumed.
+     */
+    private boolean warned = false;
+
+    @Override
+    public void visit(GameEvents events, int i) {
+        if (done || events.types[i] != EventType.TEXT_MESSAGE.code) {
+            return;
+        }
+        long markers = events.getMarkers(i);
+        if (getTimeAndInstruction) {
+            getTimeAndInstruction = false;
+            current = i;
+        }
+        if (MessageMarker.WELCOME.in(markers)
+                || MessageMarker.SPACEBAR.in(markers) || MessageMarker.CORRECT.in(markers)) {
+            skip = 0;
+            getTimeAndInstruction = true;
+        } else if (MessageMarker.NOT_THERE.in(markers)) {
+            skip++;
+            wrongBlocks++;
+        } else if (MessageMarker.GREAT.in(markers)) {
+            if (skip > 0) {
+                greatMessages++;
+                skip--;
+            }
+            if (MessageMarker.NEW.in(markers) && MessageMarker.TRUE.in(markers)) {
+                addDuration(events, i);
+                if (MessageMarker.TEACH.in(markers) || MessageMarker.FINISHED_BUILDING.in(markers)) {
+                    getTimeAndInstruction = true;
+                } else {
+                    current = i;
+                }
+            }
+        } else if (MessageMarker.CONGRATULATIONS.in(markers)) {
+            addDuration(events, i);
+            done = true;
+        }
+    }
+
+    private void addDuration(GameEvents events, int finished) {
+        if (current < 0) {
+            return;
+        }
+        int duration = (int) (events.timestamps[finished] - events.timestamps[current]);
+        durations.add(new Pair<>(events.getInstruction(current), duration));
+    }
+
+    @Override
+    public void finish(GameEvents events) {
+        if (greatMessages != wrongBlocks && !warned) {
+            logger.warn("Some wrong blocks weren't deleted in game {}", events.getGameId());
+            warned = true;
+        }
+    }
+}
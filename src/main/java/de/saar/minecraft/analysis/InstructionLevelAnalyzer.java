@@ -0,0 +1,34 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * Infers the instruction level of a game from the messages of the architect: teaching
+ * architects say "teach you" at some point, high-level architects talk about walls and
+ * floors and all other games only got block instructions.
+ */
+class InstructionLevelAnalyzer implements GameLogVisitor {
+    private boolean teaching = false;
+    private boolean highlevel = false;
+
+    @Override
+    public void visit(GameEvents events, int i) {
+        if (teaching) {
+            return;
+        }
+        long markers = events.getMarkers(i);
+        if (MessageMarker.TEACH_YOU.in(markers)) {
+            teaching = true;
+        } else if (MessageMarker.A_WALL.in(markers) || MessageMarker.A_FLOOR.in(markers)) {
+            highlevel = true;
+        }
+    }
+
+    GameInformation.InstructionLevel getLevel() {
+        if (teaching) {
+            return GameInformation.InstructionLevel.TEACHING;
+        }
+        if (highlevel) {
+            return GameInformation.InstructionLevel.HIGHLEVEL;
+        }
+        return GameInformation.InstructionLevel.BLOCK;
+    }
+}
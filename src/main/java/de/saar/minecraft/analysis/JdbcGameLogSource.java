@@ -0,0 +1,545 @@
+package de.saar.minecraft.analysis;
+
+import static de.saar.minecraft.broker.db.Tables.GAMES;
+import static de.saar.minecraft.broker.db.Tables.GAME_LOGS;
+import static de.saar.minecraft.broker.db.Tables.QUESTIONNAIRES;
+
+import com.google.common.collect.Lists;
+import de.saar.minecraft.broker.db.tables.records.GameLogsRecord;
+import de.saar.minecraft.broker.db.tables.records.GamesRecord;
+import de.saar.minecraft.broker.db.tables.records.QuestionnairesRecord;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.math3.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.Condition;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.mariadb.jdbc.MariaDbPoolDataSource;
+
+/**
+ * Reads the experiment data from the broker database.
+ */
+public class JdbcGameLogSource implements GameLogSource {
+    /**
+     * How many games {@link #streamEvents(Collection)} fetches with one query.
+     */
+    static final int BATCH_SIZE = 100;
+
+    /**
+     * How many complete games of one partition may wait for the consumer, see extractEvents.
+     */
+    static final int MAX_PENDING_GAMES = 16;
+
+    /**
+     * How many GAME_LOGS rows are fetched per round trip if no fetchSize is configured.
+     */
+    static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final Logger logger = LogManager.getLogger(JdbcGameLogSource.class);
+
+    private final DSLContext jooq;
+    private final StringTable strings = new StringTable();
+    private AnalysisMetrics metrics = new AnalysisMetrics();
+    private final QueryProfiler profiler;
+    private final int fetchSize;
+    private final int maxConnections;
+    /**
+     * Caps the number of queries running at the same time, so that any number of threads can
+     * use this source without waiting for a pooled connection until the pool times out.
+     */
+    private final Semaphore connections;
+
+    public JdbcGameLogSource(DSLContext jooq) {
+        this(jooq, null, DEFAULT_FETCH_SIZE, 1);
+    }
+
+    /**
+     * @param profiler the profiler that was registered as ExecuteListener of jooq, may be null
+     * @param fetchSize the number of rows fetched per round trip when streaming GAME_LOGS
+     * @param maxConnections the number of queries that may run at the same time
+     */
+    public JdbcGameLogSource(DSLContext jooq, QueryProfiler profiler, int fetchSize, int maxConnections) {
+        this.jooq = jooq;
+        this.profiler = profiler;
+        this.fetchSize = fetchSize;
+        this.maxConnections = maxConnections;
+        this.connections = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Opens a connection to the database at the given JDBC url.
+     */
+    public static JdbcGameLogSource connect(String url, String user, String password)
+            throws SQLException {
+        var config = new AnalysisConfiguration();
+        config.setUrl(url);
+        config.setUser(user);
+        config.setPassword(password);
+        return connect(config);
+    }
+
+    /**
+     * Creates a connection pool for the database configured in config, see
+     * AnalysisConfiguration.getJdbcUrl() for the pool and statement options.  Every query
+     * takes a connection from the pool, so queries from several threads run in parallel.
+     */
+    public static JdbcGameLogSource connect(AnalysisConfiguration config) throws SQLException {
+        var dataSource = new MariaDbPoolDataSource(config.getJdbcUrl());
+        dataSource.setUser(config.getUser());
+        dataSource.setPassword(config.getPassword());
+        var configuration = new DefaultConfiguration()
+                .set(dataSource)
+                .set(SQLDialect.MYSQL)
+                .set(new Settings().withFetchSize(config.getFetchSize()));
+        QueryProfiler profiler = null;
+        if (config.isProfileQueries()) {
+            profiler = new QueryProfiler();
+            configuration.set(new DefaultExecuteListenerProvider(profiler));
+            logger.info("Profiling all database queries.");
+        }
+        logger.info("Connected to database at {} with up to {} connections.", config.getUrl(),
+                config.getPoolSize());
+        int fetchSize = config.getFetchSize() == null ? DEFAULT_FETCH_SIZE : config.getFetchSize();
+        return new JdbcGameLogSource(DSL.using(configuration), profiler, fetchSize,
+                config.getPoolSize());
+    }
+
+    public DSLContext getJooq() {
+        return jooq;
+    }
+
+    @Override
+    public void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+        if (profiler != null) {
+            metrics.setQueryProfiler(profiler);
+        }
+    }
+
+    /**
+     * Runs the query and records its latency and number of rows as the given kind of query.
+     */
+    private <R extends Record> Result<R> fetch(String kind, ResultQuery<R> query) {
+        connections.acquireUninterruptibly();
+        try {
+            long start = System.nanoTime();
+            Result<R> result = query.fetch();
+            metrics.recordQuery(kind, System.nanoTime() - start, result.size());
+            return result;
+        } finally {
+            connections.release();
+        }
+    }
+
+    /**
+     * Runs the query with a server-side cursor and hands each row to the consumer as it
+     * arrives.  Only fetchSize rows are held in memory at once, so this is used for the
+     * GAME_LOGS, which can have hundreds of thousands of rows.
+     */
+    private <R extends Record> void stream(String kind, ResultQuery<R> query, Consumer<R> consumer) {
+        connections.acquireUninterruptibly();
+        try {
+            long start = System.nanoTime();
+            long rows = 0;
+            try (Cursor<R> cursor = query.fetchSize(fetchSize).fetchLazy()) {
+                for (R record : cursor) {
+                    consumer.accept(record);
+                    rows++;
+                }
+            }
+            metrics.recordQuery(kind, System.nanoTime() - start, rows);
+        } finally {
+            connections.release();
+        }
+    }
+
+    private static void add(GameEvents.Builder builder, GameLogsRecord record) {
+        builder.add(record.getId(), record.getMessageType(), record.getMessage(), record.getTimestamp());
+    }
+
+    @Override
+    public StringTable getStrings() {
+        return strings;
+    }
+
+    @Override
+    public Stream<GameMetadata> streamGames() {
+        return fetch("games", jooq.selectFrom(GAMES)
+                .orderBy(GAMES.ID.asc()))
+                .stream()
+                .map(JdbcGameLogSource::toMetadata);
+    }
+
+    @Override
+    public GameMetadata getGame(int gameId) {
+        Result<GamesRecord> games = fetch("game", jooq.selectFrom(GAMES)
+                .where(GAMES.ID.eq(gameId)));
+        return games.isEmpty() ? null : toMetadata(games.get(0));
+    }
+
+    /**
+     * @return the query for the log of one game
+     */
+    ResultQuery<GameLogsRecord> eventsQuery(int gameId) {
+        return jooq.selectFrom(GAME_LOGS)
+                .where(GAME_LOGS.GAMEID.eq(gameId))
+                .orderBy(GAME_LOGS.ID.asc());
+    }
+
+    /**
+     * @return the query for the logs of a batch of games, see streamEvents(...)
+     */
+    ResultQuery<GameLogsRecord> eventsBatchQuery(Collection<Integer> gameIds) {
+        return jooq.selectFrom(GAME_LOGS)
+                .where(GAME_LOGS.GAMEID.in(gameIds))
+                .orderBy(GAME_LOGS.GAMEID.asc(), GAME_LOGS.ID.asc());
+    }
+
+    /**
+     * @return the query for the logs of all games with IDs from first to last, see
+     *     extractEvents(...)
+     */
+    ResultQuery<GameLogsRecord> eventsRangeQuery(int first, int last) {
+        return jooq.selectFrom(GAME_LOGS)
+                .where(GAME_LOGS.GAMEID.between(first, last))
+                .orderBy(GAME_LOGS.GAMEID.asc(), GAME_LOGS.ID.asc());
+    }
+
+    /**
+     * @return the query for the GAME_LOGS rows with an ID above the given one, see
+     *     getEventsAfter(...)
+     */
+    ResultQuery<GameLogsRecord> newEventsQuery(long lastLogId) {
+        return jooq.selectFrom(GAME_LOGS)
+                .where(GAME_LOGS.ID.gt(lastLogId))
+                .orderBy(GAME_LOGS.ID.asc());
+    }
+
+    /**
+     * @return the query for the questionnaires of the games with QUESTIONNAIRES rows above the
+     *     given ID, see getQuestionnairesAfter(...)
+     */
+    ResultQuery<QuestionnairesRecord> newQuestionnairesQuery(long lastQuestionnaireId) {
+        return jooq.selectFrom(QUESTIONNAIRES)
+                .where(QUESTIONNAIRES.GAMEID.in(DSL.select(QUESTIONNAIRES.GAMEID)
+                        .from(QUESTIONNAIRES)
+                        .where(QUESTIONNAIRES.ID.gt(Math.toIntExact(lastQuestionnaireId)))))
+                .orderBy(QUESTIONNAIRES.GAMEID.asc(), QUESTIONNAIRES.ID.asc());
+    }
+
+    /**
+     * @return the query for the questionnaire of one game
+     */
+    ResultQuery<QuestionnairesRecord> questionnaireQuery(int gameId) {
+        return jooq.selectFrom(QUESTIONNAIRES)
+                .where(QUESTIONNAIRES.GAMEID.equal(gameId))
+                .orderBy(QUESTIONNAIRES.ID.asc());
+    }
+
+    @Override
+    public GameEvents getEvents(int gameId) {
+        var builder = new GameEvents.Builder(gameId, strings);
+        stream("gameLogs", eventsQuery(gameId), (record) -> add(builder, record));
+        return builder.build();
+    }
+
+    /**
+     * Fetches the logs of {@link #BATCH_SIZE} games per query.
+     */
+    @Override
+    public Stream<GameEvents> streamEvents(Collection<Integer> gameIds) {
+        return Lists.partition(new ArrayList<>(gameIds), BATCH_SIZE)
+                .stream()
+                .flatMap((batch) -> fetchBatch(batch).stream());
+    }
+
+    private List<GameEvents> fetchBatch(List<Integer> gameIds) {
+        Map<Integer, GameEvents.Builder> builders = new LinkedHashMap<>();
+        for (int gameId : gameIds) {
+            builders.put(gameId, new GameEvents.Builder(gameId, strings));
+        }
+        stream("gameLogsBatch", eventsBatchQuery(gameIds), (record) -> add(builders.get(record.getGameid()), record));
+        return builders.values()
+                .stream()
+                .map(GameEvents.Builder::build)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the games into one range of game IDs per connection, with about the same number
+     * of GAME_LOGS rows in each range, and scans the ranges in parallel.  Each range is read
+     * in GAMEID order, so a game is complete as soon as the rows of the next game arrive.
+     * Complete games are handed to the consumer on a task of their own, so the cursor and its
+     * connection are not held while the consumer works; at most MAX_PENDING_GAMES games per
+     * range wait for the consumer before the cursor waits for them.
+     */
+    @Override
+    public void extractEvents(Collection<Integer> gameIds, Consumer<GameEvents> consumer) {
+        List<List<Integer>> partitions = partition(gameIds, getLogSizes(), maxConnections);
+        logger.info("Extracting the logs of {} games in {} partitions.", gameIds.size(), partitions.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var pending = new Semaphore(MAX_PENDING_GAMES * Math.max(partitions.size(), 1));
+            Queue<CompletableFuture<?>> consumed = new ConcurrentLinkedQueue<>();
+            Consumer<GameEvents> handOff = (events) -> {
+                pending.acquireUninterruptibly();
+                consumed.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        consumer.accept(events);
+                    } finally {
+                        pending.release();
+                    }
+                }, executor));
+            };
+            var futures = new CompletableFuture<?>[partitions.size()];
+            for (int i = 0; i < futures.length; i++) {
+                var partition = partitions.get(i);
+                futures[i] = CompletableFuture.runAsync(() -> extractPartition(partition, handOff), executor);
+            }
+            CompletableFuture.allOf(futures).join();
+            CompletableFuture.allOf(consumed.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads all logs with a single cursor ordered by game ID, instead of one query per batch
+     * of games.
+     */
+    @Override
+    public void scanEvents(Consumer<GameEvents> consumer) {
+        var gameIds = streamGames()
+                .map(GameMetadata::getId)
+                .collect(Collectors.toList());
+        if (!gameIds.isEmpty()) {
+            extractPartition(gameIds, consumer);
+        }
+    }
+
+    /**
+     * Reads the logs of a range of games with one cursor and hands each game to the consumer
+     * on the thread of the cursor.
+     */
+    private void extractPartition(List<Integer> gameIds, Consumer<GameEvents> consumer) {
+        Deque<GameEvents.Builder> pending = new ArrayDeque<>();
+        for (int gameId : gameIds) {
+            pending.add(new GameEvents.Builder(gameId, strings));
+        }
+        var query = eventsRangeQuery(gameIds.get(0), gameIds.get(gameIds.size() - 1));
+        stream("gameLogsPartition", query, (record) -> {
+            // the rows of all games before this one have arrived
+            while (!pending.isEmpty() && pending.peek().getGameId() < record.getGameid()) {
+                consumer.accept(pending.poll().build());
+            }
+            if (!pending.isEmpty() && pending.peek().getGameId() == record.getGameid()) {
+                add(pending.peek(), record);
+            }
+        });
+        pending.forEach((builder) -> consumer.accept(builder.build()));
+    }
+
+    @Override
+    public long getLastLogId() {
+        Long last = fetch("lastLogId", jooq.select(DSL.max(GAME_LOGS.ID)).from(GAME_LOGS)).get(0).value1();
+        return last == null ? 0 : last;
+    }
+
+    /**
+     * Selects the new rows by their primary key, so a poll only reads the rows it returns.
+     */
+    @Override
+    public List<GameEvents> getEventsAfter(long lastLogId) {
+        Map<Integer, GameEvents.Builder> builders = new TreeMap<>();
+        stream("newLogs", newEventsQuery(lastLogId), (record) -> {
+            int gameId = record.getGameid();
+            add(builders.computeIfAbsent(gameId, (g) -> new GameEvents.Builder(g, strings)), record);
+        });
+        return builders.values()
+                .stream()
+                .map(GameEvents.Builder::build)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Counts the rows with one query grouped by game.
+     */
+    @Override
+    public Map<Integer, Integer> getLogSizes() {
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (var row : fetch("logSizes", jooq.select(GAME_LOGS.GAMEID, DSL.count())
+                .from(GAME_LOGS)
+                .groupBy(GAME_LOGS.GAMEID))) {
+            sizes.put(row.value1(), row.value2());
+        }
+        return sizes;
+    }
+
+    /**
+     * Splits the game IDs into at most n ranges of consecutive IDs, such that the sizes of
+     * the games in each range add up to about the same number.
+     *
+     * @param sizes the size of each game, games without a size count as 0
+     */
+    static List<List<Integer>> partition(Collection<Integer> gameIds, Map<Integer, Integer> sizes, int n) {
+        List<Integer> sorted = gameIds.stream()
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        long total = sorted.stream().mapToLong((gameId) -> sizes.getOrDefault(gameId, 0)).sum();
+        List<List<Integer>> partitions = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        long seen = 0;
+        for (int gameId : sorted) {
+            current.add(gameId);
+            seen += sizes.getOrDefault(gameId, 0);
+            // close the range once it holds its share of the total
+            if (partitions.size() < n - 1 && seen * n >= total * (partitions.size() + 1)) {
+                partitions.add(current);
+                current = new ArrayList<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            partitions.add(current);
+        }
+        return partitions;
+    }
+
+    @Override
+    public List<Pair<String, String>> getQuestionnaire(int gameId) {
+        return fetch("questionnaire", questionnaireQuery(gameId))
+                .stream()
+                .map((row) -> new Pair<>(row.getQuestion(), row.getAnswer()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Fetches all questionnaires with one query.
+     */
+    @Override
+    public QuestionnaireTable getQuestionnaires() {
+        return fetchQuestionnaires("questionnaires", jooq.selectFrom(QUESTIONNAIRES)
+                .orderBy(QUESTIONNAIRES.GAMEID.asc(), QUESTIONNAIRES.ID.asc()));
+    }
+
+    @Override
+    public long getLastQuestionnaireId() {
+        Integer last = fetch("lastQuestionnaireId", jooq.select(DSL.max(QUESTIONNAIRES.ID)).from(QUESTIONNAIRES))
+                .get(0)
+                .value1();
+        return last == null ? 0 : last;
+    }
+
+    /**
+     * Selects the games with new rows by the primary key and fetches their questionnaires with
+     * one query.
+     */
+    @Override
+    public QuestionnaireTable getQuestionnairesAfter(long lastQuestionnaireId) {
+        return fetchQuestionnaires("newQuestionnaires", newQuestionnairesQuery(lastQuestionnaireId));
+    }
+
+    /**
+     * @param query QUESTIONNAIRES rows ordered by game and ID
+     */
+    private QuestionnaireTable fetchQuestionnaires(String name, ResultQuery<QuestionnairesRecord> query) {
+        Map<Integer, List<Pair<String, String>>> questionnaires = new LinkedHashMap<>();
+        for (QuestionnairesRecord row : fetch(name, query)) {
+            questionnaires.computeIfAbsent(row.getGameid(), (g) -> new ArrayList<>())
+                    .add(new Pair<>(row.getQuestion(), row.getAnswer()));
+        }
+        var table = new QuestionnaireTable();
+        questionnaires.forEach(table::add);
+        return table;
+    }
+
+    /**
+     * Computes the counters of all games with one query grouped by game, so only one row per
+     * game is transferred instead of the logs.  The counts are SUM(CASE ...) expressions
+     * bounded by the ID of the success message, which a derived table finds for every game.
+     */
+    @Override
+    public Map<Integer, GameSummary> getSummaries() {
+        var success = DSL.select(GAME_LOGS.GAMEID, DSL.min(GAME_LOGS.ID).as("SUCCESS_ID"))
+                .from(GAME_LOGS)
+                .where(messageContains(MessageMarker.SUCCESS))
+                .groupBy(GAME_LOGS.GAMEID)
+                .asTable("SUCCESS");
+        Field<Long> successId = success.field("SUCCESS_ID", Long.class);
+        Condition untilSuccess = successId.isNull().or(GAME_LOGS.ID.le(successId));
+        Condition wrongBlock = messageContains(MessageMarker.WRONG_BLOCK);
+        var placed = countIf(untilSuccess.and(GAME_LOGS.MESSAGE_TYPE.eq(EventType.BLOCK_PLACED.messageType)));
+        var destroyed = countIf(untilSuccess.and(GAME_LOGS.MESSAGE_TYPE.eq(EventType.BLOCK_DESTROYED.messageType)));
+        var wrongBlocks = countIf(untilSuccess.and(wrongBlock));
+        var destroyedBlocks = countIf(untilSuccess.and(wrongBlock.not())
+                .and(messageContains(MessageMarker.DESTROYED_BLOCK)));
+        var query = jooq.select(GAME_LOGS.GAMEID, successId, placed, destroyed, wrongBlocks, destroyedBlocks)
+                .from(GAME_LOGS)
+                .leftJoin(success).on(success.field(GAME_LOGS.GAMEID).eq(GAME_LOGS.GAMEID))
+                .groupBy(GAME_LOGS.GAMEID, successId);
+        Map<Integer, GameSummary> summaries = new HashMap<>();
+        for (var row : fetch("summaries", query)) {
+            Long id = row.get(successId);
+            summaries.put(row.get(GAME_LOGS.GAMEID), new GameSummary(id == null ? Long.MAX_VALUE : id,
+                    row.get(placed).intValue(), row.get(destroyed).intValue(),
+                    row.get(wrongBlocks).intValue(), row.get(destroyedBlocks).intValue()));
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the condition that the MESSAGE contains the phrase of the marker, as
+     *     MessageMarker.in would find it: regardless of case under the default collation if
+     *     the marker ignores case, case-sensitive otherwise
+     */
+    private static Condition messageContains(MessageMarker marker) {
+        if (marker.ignoreCase) {
+            return GAME_LOGS.MESSAGE.contains(marker.phrase);
+        }
+        String phrase = marker.phrase
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return DSL.condition("{0} like binary {1}", GAME_LOGS.MESSAGE, DSL.val("%" + phrase + "%"));
+    }
+
+    private static Field<BigDecimal> countIf(Condition condition) {
+        return DSL.sum(DSL.when(condition, DSL.inline(1)).otherwise(DSL.inline(0)));
+    }
+
+    private static GameMetadata toMetadata(GamesRecord game) {
+        return new GameMetadata(game.getId(), game.getScenario(), game.getArchitectInfo(),
+                game.getPlayerName(), game.getClientIp());
+    }
+}
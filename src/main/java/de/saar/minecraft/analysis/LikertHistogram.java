@@ -0,0 +1,89 @@
+package de.saar.minecraft.analysis;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts how often each answer to a Likert question was given.  As Likert answers are a few
+ * small integers, the histogram stays tiny no matter how many games are analyzed, and all
+ * statistics computed from it are exact.  Histograms of different groups of games can be
+ * merged without going through the answers again.
+ */
+public class LikertHistogram {
+    private final TreeMap<Integer, Long> counts = new TreeMap<>();
+    private long count = 0;
+    private long sum = 0;
+    private long sumOfSquares = 0;
+
+    public void add(int answer) {
+        add(answer, 1);
+    }
+
+    private void add(int answer, long times) {
+        counts.merge(answer, times, Long::sum);
+        count += times;
+        sum += answer * times;
+        sumOfSquares += (long) answer * answer * times;
+    }
+
+    /**
+     * Adds all answers of the other histogram to this one.
+     */
+    public LikertHistogram merge(LikertHistogram other) {
+        for (Map.Entry<Integer, Long> entry : other.counts.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * @return the sample standard deviation, 0 for a single answer
+     */
+    public double getStandardDeviation() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count == 1) {
+            return 0;
+        }
+        double variance = (double) (count * sumOfSquares - sum * sum) / (count * (count - 1));
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * @return the middle answer, or for an even number of answers the mean of the two middle
+     *     ones rounded towards zero
+     */
+    public int getMedian() {
+        long lower = (count - 1) / 2;
+        long upper = count / 2;
+        Integer lowerValue = null;
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            seen += entry.getValue();
+            if (lowerValue == null && seen > lower) {
+                lowerValue = entry.getKey();
+            }
+            if (seen > upper) {
+                return (int) ((lowerValue + entry.getKey()) / 2.0);
+            }
+        }
+        return 0;
+    }
+
+    public int getMinimum() {
+        return counts.isEmpty() ? 0 : counts.firstKey();
+    }
+
+    public int getMaximum() {
+        return counts.isEmpty() ? 0 : counts.lastKey();
+    }
+}
@@ -4,7 +4,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import picocli.CommandLine;
@@ -51,11 +58,48 @@ class Main implements Callable<Integer> {
             + "scenario in the database")
     private boolean scenarioAnalysis = false;
 
+    @Option(names = "--exportSnapshot", description = "Writes the experiment database into the "
+            + "snapshot file <file>, which can be analyzed without a database by setting "
+            + "'snapshot' in config.yml")
+    private File snapshotFile = null;
+
     @Option(names = "--partialAnalysis", arity = "3", description = "Runs an aggregate analysis "
             + "for games with the properties <scenario> <architect> <only successful (true/false)>")
     private String[] partialArguments;
 
+    @Option(names = "--blocksAt", arity = "2..*", description = "Prints the placed, destroyed and "
+            + "present blocks of the game <gameId> at each of the times <time>..., e.g. "
+            + "2020-06-15T11:17:25")
+    private String[] blocksAtArguments;
+
+    @Option(names = "--prepareDatabase", description = "Adds the indexes "
+            + "the analysis queries use to the database and logs their query plans before and after. "
+            + "This alters the database, so only use it on your own copy")
+    private boolean prepareDatabase = false;
+
+    @Option(names = "--shard", description = "Only analyzes the games of shard <k>/<N> and writes "
+            + "partial aggregate results into the directory shard-<k>-of-<N> of the output directory, "
+            + "to be combined with --merge")
+    private String shard = null;
+
+    @Option(names = "--merge", description = "Merges the partial results of all shards in the "
+            + "output directory into the reports a single run would have written")
+    private boolean merge = false;
+
+    @Option(names = "--serve", description = "Keeps the games in memory and answers analysis "
+            + "requests over HTTP on localhost:<port> until POST /shutdown, see AnalysisServer")
+    private Integer servePort = null;
+
+    @Option(names = "--watch", description = "Runs the full analysis and then checks for new game "
+            + "logs every <seconds>, rewriting the reports of the games with new logs and the aggregate "
+            + "reports containing them, until the program is stopped")
+    private Integer watchSeconds = null;
+
     public static void main(String... args) {
+        // without TCP_NODELAY, the small answers of --serve wait for the delayed ACK of the client
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
         int exitCode = new CommandLine(new Main()).execute(args);
         System.exit(exitCode);
     }
@@ -70,16 +114,46 @@ class Main implements Callable<Integer> {
             return 1;
         }
 
-        var experimentAnalysis = new ExperimentAnalysis(config);
+        if (merge) {
+            ShardOutput.merge(Paths.get(config.getDirName()));
+            logger.info("Shards merged into {}", config.getDirName());
+            return 0;
+        }
+        if (shard != null) {
+            try {
+                Shard.parse(shard);
+            } catch (IllegalArgumentException e) {
+                logger.error(e.getMessage());
+                return 1;
+            }
+            config.setShard(shard);
+        }
+
+        GameLogSource source = GameLogSource.open(config);
+        if (prepareDatabase) {
+            if (!(source instanceof JdbcGameLogSource)) {
+                logger.error("--prepareDatabase needs a database, but a snapshot is configured");
+                return 1;
+            }
+            logger.info("Preparing the database");
+            new DatabasePreparation((JdbcGameLogSource) source).run();
+            logger.info("Database prepared");
+        }
+        var experimentAnalysis = new ExperimentAnalysis(config, source);
+        if (snapshotFile != null) {
+            logger.info("Exporting snapshot to {}", snapshotFile);
+            experimentAnalysis.exportSnapshot(snapshotFile.toPath());
+            logger.info("Snapshot exported");
+        }
         if (fullAnalysis) {
             logger.info("Starting full analysis");
             experimentAnalysis.makeAnalysis();
             logger.info("Full analysis finished.");
         }
         if (startID != null && endID != null) {
-            String dirName = config.getDirName();
+            String dirName = experimentAnalysis.getDirName();
             if (! new File(dirName).isDirectory()) {
-                boolean wasCreated = new File(dirName).mkdir();
+                boolean wasCreated = new File(dirName).mkdirs();
                 if (!wasCreated) {
                     logger.error("Output directory {} could not be created", dirName);
                     System.exit(-1);
@@ -121,11 +195,66 @@ class Main implements Callable<Integer> {
             logger.info("Analysis finished.");
         }
 
+        if (blocksAtArguments != null) {
+            List<LocalDateTime> times = Arrays.stream(blocksAtArguments, 1, blocksAtArguments.length)
+                    .map(LocalDateTime::parse)
+                    .collect(Collectors.toList());
+            experimentAnalysis.printBlocksAt(Integer.parseInt(blocksAtArguments[0]), times);
+        }
+
         if (saveCSV) {
             logger.info("Starting saving CSV");
             experimentAnalysis.saveAsCSV();
             logger.info("CSV saved");
         }
+
+        if (watchSeconds != null) {
+            watchUntilShutdown(experimentAnalysis);
+            return 0;
+        }
+
+        if (servePort != null) {
+            var server = new AnalysisServer(experimentAnalysis, servePort);
+            server.start();
+            try {
+                server.awaitStop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 1;
+            }
+            logger.info("Server stopped");
+        }
+
+        writeMetrics(experimentAnalysis);
         return 0;
     }
+
+    /**
+     * Watches the experiment until the JVM shuts down, e.g. on Ctrl-C.  The shutdown hook stops
+     * watching and waits until the poll that is running has written its reports and the metrics
+     * are written, since the JVM exits as soon as the hooks are done.
+     */
+    private void watchUntilShutdown(ExperimentAnalysis experimentAnalysis) throws IOException {
+        var finished = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            experimentAnalysis.stopWatching();
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "stop-watching"));
+        try {
+            experimentAnalysis.watch(Duration.ofSeconds(watchSeconds));
+            logger.info("Stopped watching");
+            writeMetrics(experimentAnalysis);
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private static void writeMetrics(ExperimentAnalysis experimentAnalysis) throws IOException {
+        experimentAnalysis.writeMetrics();
+        logger.info("Metrics written to {}", new File(experimentAnalysis.getDirName(), "metrics.json"));
+    }
 }
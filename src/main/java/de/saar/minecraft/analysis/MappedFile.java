@@ -0,0 +1,121 @@
+package de.saar.minecraft.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file mapped into memory.  A single mapping cannot be larger than 2 GB, so the
+ * file is mapped in windows of WINDOW_SIZE bytes and values that cross the end of a window
+ * are put together from both.  All numbers are big-endian.
+ */
+class MappedFile {
+    static final long WINDOW_SIZE = 1L << 30;
+
+    private final long size;
+    private final long windowSize;
+    private final ByteBuffer[] windows;
+
+    private MappedFile(long size, long windowSize, ByteBuffer[] windows) {
+        this.size = size;
+        this.windowSize = windowSize;
+        this.windows = windows;
+    }
+
+    /**
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedFile map(Path file) throws IOException {
+        return map(file, WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize the size of the mappings, smaller than WINDOW_SIZE only for tests
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedFile map(Path file, long windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            var windows = new ByteBuffer[(int) ((size + windowSize - 1) / windowSize)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * windowSize;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+            }
+            return new MappedFile(size, windowSize, windows);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    int getInt(long position) {
+        ByteBuffer window = windows[(int) (position / windowSize)];
+        int offset = (int) (position % windowSize);
+        if (offset + Integer.BYTES <= window.limit()) {
+            return window.getInt(offset);
+        }
+        return ByteBuffer.wrap(getBytes(position, Integer.BYTES)).getInt();
+    }
+
+    long getLong(long position) {
+        ByteBuffer window = windows[(int) (position / windowSize)];
+        int offset = (int) (position % windowSize);
+        if (offset + Long.BYTES <= window.limit()) {
+            return window.getLong(offset);
+        }
+        return ByteBuffer.wrap(getBytes(position, Long.BYTES)).getLong();
+    }
+
+    /**
+     * @return a copy of length bytes from the given position on
+     */
+    byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            long current = position + done;
+            ByteBuffer window = windows[(int) (current / windowSize)];
+            int offset = (int) (current % windowSize);
+            int n = Math.min(length - done, window.limit() - offset);
+            window.get(offset, bytes, done, n);
+            done += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the view of length bytes from the given position on, without copying them if
+     *     they are in one window
+     */
+    private ByteBuffer slice(long position, int length) {
+        if (length == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        ByteBuffer window = windows[(int) (position / windowSize)];
+        int offset = (int) (position % windowSize);
+        if (offset + length <= window.limit()) {
+            return window.slice(offset, length);
+        }
+        return ByteBuffer.wrap(getBytes(position, length));
+    }
+
+    long[] getLongs(long position, int n) {
+        long[] values = new long[n];
+        slice(position, Long.BYTES * n).asLongBuffer().get(values);
+        return values;
+    }
+
+    int[] getInts(long position, int n) {
+        int[] values = new int[n];
+        slice(position, Integer.BYTES * n).asIntBuffer().get(values);
+        return values;
+    }
+
+    String getString(long position, int length) {
+        return new String(getBytes(position, length), StandardCharsets.UTF_8);
+    }
+}
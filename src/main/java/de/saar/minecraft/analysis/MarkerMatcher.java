@@ -0,0 +1,127 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds all MessageMarker phrases in a string with one pass over it (Aho-Corasick).  The
+ * phrases are put into a trie, which is compiled into a table of transitions for every node
+ * and ASCII character: on a mismatch the table continues at the longest phrase prefix that
+ * still matches instead of starting over, and every node knows all phrases that end at it.
+ * The phrases are ASCII, so any other character leads back to the root.
+ *
+ * <p>The automaton runs on the text with ASCII letters in lower case, so it finds the phrases
+ * regardless of case.  Markers that are case-sensitive are checked with String.contains
+ * when the automaton found them, which only happens for the few messages containing them.</p>
+ */
+class MarkerMatcher {
+    /**
+     * The matcher for all MessageMarkers.
+     */
+    static final MarkerMatcher MARKERS = new MarkerMatcher(MessageMarker.values());
+
+    private static final int ALPHABET = 128;
+
+    private final int[][] transitions;
+    /**
+     * The bits of the markers ending at each node, including those of its suffixes.
+     */
+    private final long[] output;
+    /**
+     * The case-sensitive markers, which are checked again after matching.
+     */
+    private final List<MessageMarker> caseSensitive = new ArrayList<>();
+    private final long caseSensitiveBits;
+
+    MarkerMatcher(MessageMarker[] markers) {
+        List<int[]> trie = new ArrayList<>();
+        List<Long> phrases = new ArrayList<>();
+        trie.add(newNode());
+        phrases.add(0L);
+        long sensitiveBits = 0;
+        for (MessageMarker marker : markers) {
+            if (!marker.ignoreCase) {
+                caseSensitive.add(marker);
+                sensitiveBits |= marker.bit();
+            }
+            int node = 0;
+            for (char c : toLowerCase(marker.phrase).toCharArray()) {
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Marker phrase is not ASCII: " + marker.phrase);
+                }
+                if (trie.get(node)[c] < 0) {
+                    trie.get(node)[c] = trie.size();
+                    trie.add(newNode());
+                    phrases.add(0L);
+                }
+                node = trie.get(node)[c];
+            }
+            phrases.set(node, phrases.get(node) | marker.bit());
+        }
+        caseSensitiveBits = sensitiveBits;
+
+        transitions = new int[trie.size()][];
+        output = new long[trie.size()];
+        int[] fail = new int[trie.size()];
+        // breadth-first, so the suffix link of a node is complete before its children are visited
+        var queue = new ArrayDeque<Integer>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            transitions[node] = new int[ALPHABET];
+            output[node] = phrases.get(node) | (node == 0 ? 0 : output[fail[node]]);
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = trie.get(node)[c];
+                int onMismatch = node == 0 ? 0 : transitions[fail[node]][c];
+                if (child < 0) {
+                    transitions[node][c] = onMismatch;
+                } else {
+                    transitions[node][c] = child;
+                    fail[child] = onMismatch;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private static int[] newNode() {
+        int[] children = new int[ALPHABET];
+        Arrays.fill(children, -1);
+        return children;
+    }
+
+    /**
+     * @return the bits of all markers contained in the text, test them with MessageMarker.in
+     */
+    long match(String text) {
+        long found = 0;
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = toLowerCase(text.charAt(i));
+            node = c < ALPHABET ? transitions[node][c] : 0;
+            found |= output[node];
+        }
+        if ((found & caseSensitiveBits) != 0) {
+            for (MessageMarker marker : caseSensitive) {
+                if (marker.in(found) && !text.contains(marker.phrase)) {
+                    found &= ~marker.bit();
+                }
+            }
+        }
+        return found;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static String toLowerCase(String phrase) {
+        var sb = new StringBuilder(phrase.length());
+        for (int i = 0; i < phrase.length(); i++) {
+            sb.append(toLowerCase(phrase.charAt(i)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * The phrases the analyzers look for in the messages of a game.  All of them are found in
+ * one pass over a message by MarkerMatcher, see GameEvents.getMarkers(int).
+ *
+ * <p>The phrases the analysis used to find with SQL (MESSAGE like '%phrase%') ignore case,
+ * as the default collation of MariaDB does, so games are classified as before.  All other
+ * phrases were matched with String.contains and are case-sensitive.</p>
+ */
+public enum MessageMarker {
+    WELCOME("Welcome!"),
+    SPACEBAR("spacebar"),
+    CORRECT("correct"),
+    NOT_THERE("Not there!"),
+    WRONG_BLOCK("Not there! please remove that block again", true),
+    DESTROYED_BLOCK("Please add this block again.", true),
+    GREAT("Great!"),
+    NEW("new"),
+    TRUE("true"),
+    TEACH("teach"),
+    TEACH_YOU("teach you", true),
+    FINISHED_BUILDING("finished building"),
+    CONGRATULATIONS("Congratulations"),
+    DONE_BUILDING("Congratulations, you are done building"),
+    A_WALL("a wall", true),
+    A_FLOOR("a floor", true),
+    /**
+     * the escaped JSON of an instruction with a derivation tree.
+     */
+    DERIVATION_TREE("\\\"tree\\\":"),
+    SUCCESSFULLY_FINISHED("SuccessfullyFinished"),
+    /**
+     * the game state message showing that the user was successful.
+     */
+    SUCCESS("\"newGameState\": \"SuccessfullyFinished\"", true);
+
+    public final String phrase;
+    public final boolean ignoreCase;
+
+    MessageMarker(String phrase) {
+        this(phrase, false);
+    }
+
+    MessageMarker(String phrase, boolean ignoreCase) {
+        this.phrase = phrase;
+        this.ignoreCase = ignoreCase;
+    }
+
+    long bit() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @return true if this marker is in the given result of MarkerMatcher.match
+     */
+    public boolean in(long markers) {
+        return (markers & bit()) != 0;
+    }
+}
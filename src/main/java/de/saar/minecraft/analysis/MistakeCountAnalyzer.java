@@ -0,0 +1,47 @@
+package de.saar.minecraft.analysis;
+
+/**
+ * Counts the architect messages about mistakes until the game was successful.
+ */
+class MistakeCountAnalyzer implements GameLogVisitor {
+    private final long successMessageID;
+    /**
+     * Number of "Not there!" messages, i.e. blocks placed at a wrong location.
+     */
+    int wrongBlocks = 0;
+    /**
+     * Number of "Please add this block again." messages, i.e. correct blocks that were destroyed.
+     */
+    int destroyedBlocks = 0;
+    /**
+     * The times of the "Not there!" messages, built by finish(...).
+     */
+    EventTimeline wrongBlockTimeline = null;
+    private final EventTimeline.Builder wrongBlockTimes = new EventTimeline.Builder();
+
+    /**
+     * @param successMessageID the ID of the success message, later messages are not counted
+     */
+    MistakeCountAnalyzer(long successMessageID) {
+        this.successMessageID = successMessageID;
+    }
+
+    @Override
+    public void visit(GameEvents events, int i) {
+        if (events.ids[i] > successMessageID) {
+            return;
+        }
+        long markers = events.getMarkers(i);
+        if (MessageMarker.WRONG_BLOCK.in(markers)) {
+            wrongBlocks++;
+            wrongBlockTimes.add(events.timestamps[i]);
+        } else if (MessageMarker.DESTROYED_BLOCK.in(markers)) {
+            destroyedBlocks++;
+        }
+    }
+
+    @Override
+    public void finish(GameEvents events) {
+        wrongBlockTimeline = wrongBlockTimes.build();
+    }
+}
@@ -0,0 +1,129 @@
+package de.saar.minecraft.analysis;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.time.LocalDateTime;
+
+/**
+ * A TextMessage of a game with its JSON parsed.  The "text" of a TextMessage is either plain
+ * text like "Not there! please remove that block again" or, for instructions, itself a JSON
+ * object with the "message" shown to the user, whether it is a "new" instruction and the
+ * derivation "tree" it was generated from.  GameEvents.getInstruction(i) parses every
+ * TextMessage once.
+ */
+public class ParsedInstruction {
+    /**
+     * The tree of instructions that were not generated from a derivation, e.g. "now I will
+     * teach you how to build a wall".
+     */
+    static final String NO_TREE = "NULL";
+
+    private final int index;
+    private final long timestamp;
+    private final String text;
+    private final boolean structured;
+    private final boolean isNew;
+    private final StringTable strings;
+    private final int[] tree;
+
+    private ParsedInstruction(int index, long timestamp, String text, boolean structured, boolean isNew,
+                              StringTable strings, int[] tree) {
+        this.index = index;
+        this.timestamp = timestamp;
+        this.text = text;
+        this.structured = structured;
+        this.isNew = isNew;
+        this.strings = strings;
+        this.tree = tree;
+    }
+
+    /**
+     * Parses the message of a TextMessage event.  Messages which are not JSON are kept as
+     * plain text.
+     *
+     * @param strings the table the tokens of the derivation tree are interned into
+     */
+    static ParsedInstruction parse(int index, long timestamp, String message, StringTable strings) {
+        String text = message;
+        try {
+            JsonElement outer = JsonParser.parseString(message);
+            if (outer.isJsonObject() && outer.getAsJsonObject().has("text")) {
+                text = outer.getAsJsonObject().get("text").getAsString();
+            }
+            if (!text.startsWith("{")) {
+                return new ParsedInstruction(index, timestamp, text, false, false, strings, null);
+            }
+            JsonObject inner = JsonParser.parseString(text).getAsJsonObject();
+            boolean isNew = inner.has("new") && inner.get("new").getAsBoolean();
+            int[] tree = null;
+            if (inner.has("tree") && !inner.get("tree").getAsString().equals(NO_TREE)) {
+                String[] tokens = inner.get("tree").getAsString().split("[(),]+");
+                tree = new int[tokens.length];
+                for (int t = 0; t < tokens.length; t++) {
+                    tree[t] = strings.intern(tokens[t]);
+                }
+            }
+            String shown = inner.has("message") ? inner.get("message").getAsString() : text;
+            return new ParsedInstruction(index, timestamp, shown, true, isNew, strings, tree);
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            return new ParsedInstruction(index, timestamp, text, false, false, strings, null);
+        }
+    }
+
+    /**
+     * @return the index of the TextMessage in the GameEvents of its game
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public LocalDateTime getTime() {
+        return GameEvents.toLocalDateTime(timestamp);
+    }
+
+    /**
+     * @return the text shown to the user, i.e. the "message" of an instruction
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return true for instructions, whose text is a JSON object
+     */
+    public boolean isStructured() {
+        return structured;
+    }
+
+    public boolean isNew() {
+        return isNew;
+    }
+
+    /**
+     * @return false if the instruction has no derivation tree or it is "NULL"
+     */
+    public boolean hasTree() {
+        return tree != null;
+    }
+
+    /**
+     * @return the tokens of the derivation tree as IDs in the string table of the game
+     */
+    public int[] getTree() {
+        return tree;
+    }
+
+    /**
+     * @return the tokens of the derivation tree split at brackets and commas, e.g.
+     *     "", "place", "b1" for "(place,b1)"
+     */
+    public String[] getTreeTokens() {
+        String[] tokens = new String[tree.length];
+        for (int t = 0; t < tree.length; t++) {
+            tokens[t] = strings.get(tree[t]);
+        }
+        return tokens;
+    }
+}
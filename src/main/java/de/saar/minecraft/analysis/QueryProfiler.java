@@ -0,0 +1,166 @@
+package de.saar.minecraft.analysis;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+/**
+ * Records every query jOOQ runs and aggregates them by the shape of their SQL, i.e. the SQL
+ * with all literals and bind values replaced by "?".  For each shape it reports how often it
+ * ran, its latency (total, median, 95th percentile and maximum) and the rows it returned.
+ * A shape that runs once per game is an N+1 pattern that should be fetched in bulk.
+ *
+ * <p>The latencies of a shape are counted in a histogram of fixed size, so a long analysis
+ * does not keep every sample.  The median and 95th percentile are the upper bounds of their
+ * histogram buckets, which are at most 1/16 above the exact value.</p>
+ *
+ * <p>It is enabled with "profileQueries: true" in the configuration and reported in
+ * metrics.json.</p>
+ */
+public class QueryProfiler extends DefaultExecuteListener {
+    private static final String START = "QueryProfiler.start";
+    private static final String ROWS = "QueryProfiler.rows";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern VALUE_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<String, Shape> shapes = new HashMap<>();
+
+    /**
+     * All executions of one query shape.
+     */
+    private static class Shape {
+        /**
+         * Latencies below 16ns have a bucket each, larger ones are split into 16 buckets per
+         * power of two.
+         */
+        static final int SUB_BUCKET_BITS = 4;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        final long[] buckets = new long[Long.SIZE * SUB_BUCKETS];
+        long count = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+        long rows = 0;
+
+        void add(long nanos, long rows) {
+            buckets[bucket(Math.max(nanos, 0))]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            this.rows += rows;
+        }
+
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+            int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+        }
+
+        /**
+         * @return the largest latency that falls into the given bucket
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        /**
+         * @return the nearest-rank percentile of the recorded latencies
+         */
+        long percentile(int percent) {
+            long rank = Math.max((long) Math.ceil(percent / 100.0 * count), 1);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+
+    @Override
+    public void start(ExecuteContext ctx) {
+        ctx.data(START, System.nanoTime());
+        ctx.data(ROWS, 0L);
+    }
+
+    @Override
+    public void recordEnd(ExecuteContext ctx) {
+        ctx.data(ROWS, (Long) ctx.data(ROWS) + 1);
+    }
+
+    /**
+     * Called after all rows were fetched, so the latency includes the transfer of the result.
+     */
+    @Override
+    public void end(ExecuteContext ctx) {
+        Object start = ctx.data(START);
+        if (start == null || ctx.sql() == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - (Long) start;
+        long rows = (Long) ctx.data(ROWS);
+        String shape = normalize(ctx.sql());
+        synchronized (this) {
+            shapes.computeIfAbsent(shape, (k) -> new Shape()).add(nanos, rows);
+        }
+    }
+
+    /**
+     * @return the SQL with all literals replaced by "?", lists of values collapsed into "(...)"
+     *     and whitespace collapsed
+     */
+    static String normalize(String sql) {
+        String result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+        result = VALUE_LIST.matcher(result).replaceAll("(...)");
+        return WHITESPACE.matcher(result).replaceAll(" ").trim();
+    }
+
+    /**
+     * @return the total number of queries recorded
+     */
+    public synchronized long getNumQueries() {
+        return shapes.values().stream().mapToLong((s) -> s.count).sum();
+    }
+
+    /**
+     * @return one entry per query shape, the shapes with the highest total latency first
+     */
+    public synchronized JsonArray toJson() {
+        List<Map.Entry<String, Shape>> entries = new ArrayList<>(shapes.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().totalNanos, a.getValue().totalNanos));
+        var json = new JsonArray();
+        for (Map.Entry<String, Shape> entry : entries) {
+            Shape s = entry.getValue();
+            var shape = new JsonObject();
+            shape.addProperty("sql", entry.getKey());
+            shape.addProperty("count", s.count);
+            shape.addProperty("rows", s.rows);
+            shape.addProperty("totalMillis", s.totalNanos / 1_000_000.0);
+            shape.addProperty("medianMillis", s.percentile(50) / 1_000_000.0);
+            shape.addProperty("p95Millis", s.percentile(95) / 1_000_000.0);
+            shape.addProperty("maxMillis", s.maxNanos / 1_000_000.0);
+            json.add(shape);
+        }
+        return json;
+    }
+}
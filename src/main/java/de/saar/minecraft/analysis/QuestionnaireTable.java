@@ -0,0 +1,136 @@
+package de.saar.minecraft.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * The QUESTIONNAIRES of many games, loaded at once with GameLogSource.getQuestionnaires().
+ * The questions are interned, as every game asks the same ones, and the numeric answers are
+ * kept as ints.  An answer is numeric if it only consists of digits.
+ */
+public class QuestionnaireTable {
+    private final StringTable questions = new StringTable();
+    private final Map<Integer, Answers> games = new HashMap<>();
+
+    /**
+     * The answers of one game, in questionnaire ID order.
+     */
+    public static class Answers {
+        private final StringTable questions;
+        private final int[] questionIds;
+        private final String[] answers;
+        /** the positions of the numeric answers and their values */
+        private final int[] numericPositions;
+        private final int[] numericAnswers;
+        private final int[] freeformPositions;
+
+        private Answers(StringTable questions, int[] questionIds, String[] answers, int[] numericPositions,
+                        int[] numericAnswers, int[] freeformPositions) {
+            this.questions = questions;
+            this.questionIds = questionIds;
+            this.answers = answers;
+            this.numericPositions = numericPositions;
+            this.numericAnswers = numericAnswers;
+            this.freeformPositions = freeformPositions;
+        }
+
+        /**
+         * @return list of question-answer pairs where the answer is a number
+         */
+        public List<Pair<String, Integer>> getNumericQuestions() {
+            List<Pair<String, Integer>> result = new ArrayList<>(numericPositions.length);
+            for (int i = 0; i < numericPositions.length; i++) {
+                result.add(new Pair<>(questions.get(questionIds[numericPositions[i]]), numericAnswers[i]));
+            }
+            return result;
+        }
+
+        /**
+         * @return list of question-answer pairs where the answer is not a number
+         */
+        public List<Pair<String, String>> getFreeformQuestions() {
+            List<Pair<String, String>> result = new ArrayList<>(freeformPositions.length);
+            for (int position : freeformPositions) {
+                result.add(new Pair<>(questions.get(questionIds[position]), answers[position]));
+            }
+            return result;
+        }
+
+        /**
+         * @return all question-answer pairs as they were added
+         */
+        public List<Pair<String, String>> getQuestionnaire() {
+            List<Pair<String, String>> result = new ArrayList<>(answers.length);
+            for (int i = 0; i < answers.length; i++) {
+                result.add(new Pair<>(questions.get(questionIds[i]), answers[i]));
+            }
+            return result;
+        }
+
+        public int getNumNumericQuestions() {
+            return numericPositions.length;
+        }
+    }
+
+    /**
+     * Adds the question-answer pairs of one game, replacing the ones added before.
+     */
+    public QuestionnaireTable add(int gameId, List<Pair<String, String>> questionnaire) {
+        games.put(gameId, toAnswers(questions, questionnaire));
+        return this;
+    }
+
+    /**
+     * @return the IDs of the games that were added
+     */
+    public Set<Integer> getGameIds() {
+        return Collections.unmodifiableSet(games.keySet());
+    }
+
+    /**
+     * @return the answers of the given game, no answers if it has no questionnaire
+     */
+    public Answers get(int gameId) {
+        Answers answers = games.get(gameId);
+        return answers == null ? toAnswers(questions, List.of()) : answers;
+    }
+
+    /**
+     * Converts the questionnaire of a single game.
+     */
+    public static Answers of(List<Pair<String, String>> questionnaire) {
+        return toAnswers(new StringTable(), questionnaire);
+    }
+
+    private static Answers toAnswers(StringTable questions, List<Pair<String, String>> questionnaire) {
+        int numNumeric = (int) questionnaire.stream()
+                .filter((qa) -> NumberUtils.isDigits(qa.getSecond()))
+                .count();
+        int[] questionIds = new int[questionnaire.size()];
+        String[] answers = new String[questionnaire.size()];
+        int[] numericPositions = new int[numNumeric];
+        int[] numericAnswers = new int[numNumeric];
+        int[] freeformPositions = new int[questionnaire.size() - numNumeric];
+        int numeric = 0;
+        int freeform = 0;
+        for (int i = 0; i < questionnaire.size(); i++) {
+            Pair<String, String> qa = questionnaire.get(i);
+            questionIds[i] = questions.intern(qa.getFirst());
+            answers[i] = qa.getSecond();
+            if (NumberUtils.isDigits(qa.getSecond())) {
+                numericPositions[numeric] = i;
+                numericAnswers[numeric] = Integer.parseInt(qa.getSecond());
+                numeric++;
+            } else {
+                freeformPositions[freeform++] = i;
+            }
+        }
+        return new Answers(questions, questionIds, answers, numericPositions, numericAnswers, freeformPositions);
+    }
+}
@@ -0,0 +1,129 @@
+package de.saar.minecraft.analysis;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes rendered reports to disk on a separate thread, so that computing the next report
+ * overlaps with writing the previous one.  The reports are kept in a bounded queue; if the
+ * writer falls behind, submit blocks until there is room again.
+ *
+ * <p>close() waits until all submitted reports are on disk and throws the first error that
+ * occurred while writing.</p>
+ */
+class ReportWriter implements Closeable {
+    /**
+     * How many rendered reports may wait to be written.
+     */
+    static final int QUEUE_CAPACITY = 64;
+
+    private static final Report END = new Report(null, null);
+
+    private final BlockingQueue<Report> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AnalysisMetrics metrics;
+    private final Thread thread;
+    private volatile IOException failure = null;
+
+    private static class Report {
+        final Path file;
+        final ByteBuffer content;
+
+        Report(Path file, ByteBuffer content) {
+            this.file = file;
+            this.content = content;
+        }
+    }
+
+    ReportWriter(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+        thread = new Thread(this::drain, "report-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the content to be written into the file, replacing the file if it exists.
+     *
+     * @throws IOException if writing an earlier report failed
+     */
+    void submit(Path file, String content) throws IOException {
+        checkFailure();
+        put(new Report(file, ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private void put(Report report) throws IOException {
+        try {
+            queue.put(report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing " + report.file);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Report report;
+            try {
+                report = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (report == END) {
+                return;
+            }
+            if (failure != null) {
+                // drop the remaining reports, close() reports the failure
+                continue;
+            }
+            try {
+                write(report);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void write(Report report) throws IOException {
+        long size = report.content.remaining();
+        try (FileChannel channel = FileChannel.open(report.file, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            while (report.content.hasRemaining()) {
+                channel.write(report.content);
+            }
+        }
+        metrics.recordFileWritten(size);
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Could not write report", failure);
+        }
+    }
+
+    /**
+     * Waits until all queued reports are written.
+     *
+     * @throws IOException if one of the reports could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        put(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the report writer");
+        }
+        checkFailure();
+    }
+}
@@ -0,0 +1,88 @@
+package de.saar.minecraft.analysis;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One of N shards of the games of an experiment, written as k/N with k from 1 to N.  Each
+ * shard gets a range of consecutive game IDs with about the same number of GAME_LOGS rows,
+ * so a shard only reads the logs of its own range.  Every shard computes the ranges from
+ * the same log sizes, so they do not overlap as long as the shards start on the same data.
+ */
+public class Shard {
+    private final int index;
+    private final int count;
+
+    public Shard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Shard " + index + "/" + count + " does not exist, "
+                    + "shards are numbered from 1 to their count");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @param shard the shard as k/N, e.g. 2/4
+     * @throws IllegalArgumentException if shard is not of the form k/N with 1 &lt;= k &lt;= N
+     */
+    public static Shard parse(String shard) {
+        String[] parts = shard.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Shard must be given as k/N, e.g. 2/4, not " + shard);
+        }
+        try {
+            return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Shard must be given as k/N, e.g. 2/4, not " + shard, e);
+        }
+    }
+
+    /**
+     * Splits the games into count ranges of consecutive IDs, weighting each game by its number
+     * of log rows plus one, so games without logs are spread over the shards as well.
+     *
+     * @param gameIds the IDs of all games of the experiment
+     * @param logSizes the number of GAME_LOGS rows of every game with a log, see
+     *     GameLogSource.getLogSizes
+     * @return the IDs of the games of this shard
+     */
+    public Set<Integer> select(List<Integer> gameIds, Map<Integer, Integer> logSizes) {
+        Map<Integer, Integer> weights = new HashMap<>();
+        for (int gameId : gameIds) {
+            weights.put(gameId, logSizes.getOrDefault(gameId, 0) + 1);
+        }
+        List<List<Integer>> ranges = JdbcGameLogSource.partition(gameIds, weights, count);
+        return index <= ranges.size() ? new HashSet<>(ranges.get(index - 1)) : Set.of();
+    }
+
+    /**
+     * @return true for shard N/N, which also gets the games started during a watched analysis
+     */
+    public boolean isLast() {
+        return index == count;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the name of the directory in the output directory this shard writes into
+     */
+    public String getDirectoryName() {
+        return "shard-" + index + "-of-" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
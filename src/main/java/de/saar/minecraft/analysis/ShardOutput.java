@@ -0,0 +1,148 @@
+package de.saar.minecraft.analysis;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * What a shard of a sharded analysis writes into the file "partial.json" of its directory:
+ * the statistics of every aggregate report and the lines of data.csv for its games.  The
+ * reports of single games are written by the shard itself.  {@link #merge(Path)} combines the
+ * outputs of all shards into the files a single process would have written.
+ */
+public class ShardOutput {
+    static final String FILE_NAME = "partial.json";
+
+    private static final Logger logger = LogManager.getLogger(ShardOutput.class);
+
+    private int shard;
+    private int numShards;
+    private TreeMap<String, AggregateStatistics> reports = new TreeMap<>();
+    private CsvFragment csv = null;
+
+    public ShardOutput(Shard shard) {
+        this.shard = shard.getIndex();
+        this.numShards = shard.getCount();
+    }
+
+    /**
+     * @param path the path of the report relative to the output directory
+     */
+    public synchronized void addReport(String path, AggregateStatistics statistics) {
+        reports.put(path, statistics);
+    }
+
+    public synchronized void setCsv(CsvFragment csv) {
+        this.csv = csv;
+    }
+
+    /**
+     * Writes the output into partial.json in the given directory.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        try (Writer writer = Files.newBufferedWriter(dir.resolve(FILE_NAME))) {
+            new Gson().toJson(this, writer);
+        }
+    }
+
+    /**
+     * @throws IOException if partial.json in the given directory cannot be read
+     */
+    public static ShardOutput read(Path dir) throws IOException {
+        try (Reader reader = Files.newBufferedReader(dir.resolve(FILE_NAME))) {
+            return new Gson().fromJson(reader, ShardOutput.class);
+        }
+    }
+
+    /**
+     * Merges the outputs of the shards in the subdirectories "shard-k-of-N" of the given
+     * directory and writes the aggregate reports, data.csv and the reports of single games
+     * into it, as a single process would have.
+     *
+     * @throws IOException if a shard is missing, the shards did not write the same reports or
+     *     the files cannot be read or written
+     */
+    public static void merge(Path dir) throws IOException {
+        List<ShardOutput> outputs = new ArrayList<>();
+        List<Path> shardDirs = new ArrayList<>();
+        try (DirectoryStream<Path> subdirs = Files.newDirectoryStream(dir, "shard-*-of-*")) {
+            for (Path subdir : subdirs) {
+                if (Files.isRegularFile(subdir.resolve(FILE_NAME))) {
+                    outputs.add(read(subdir));
+                    shardDirs.add(subdir);
+                }
+            }
+        }
+        if (outputs.isEmpty()) {
+            throw new IOException("There are no shard outputs in " + dir);
+        }
+        int numShards = outputs.get(0).numShards;
+        boolean[] found = new boolean[numShards + 1];
+        for (ShardOutput output : outputs) {
+            if (output.numShards != numShards) {
+                throw new IOException("The shards in " + dir + " were written for different numbers of shards");
+            }
+            found[output.shard] = true;
+        }
+        for (int k = 1; k <= numShards; k++) {
+            if (!found[k]) {
+                throw new IOException("The output of shard " + k + "/" + numShards + " is missing in " + dir);
+            }
+        }
+        outputs.sort(Comparator.comparingInt((output) -> output.shard));
+        logger.info("Merging the outputs of {} shards", numShards);
+
+        Map<String, AggregateStatistics> reports = new TreeMap<>();
+        CsvFragment csv = null;
+        for (ShardOutput output : outputs) {
+            if (!output.reports.keySet().equals(outputs.get(0).reports.keySet())) {
+                throw new IOException("Shard " + output.shard + "/" + numShards
+                        + " did not write the same reports as shard " + outputs.get(0).shard + "/" + numShards);
+            }
+            output.reports.forEach((path, statistics) -> reports.merge(path, statistics, AggregateStatistics::merge));
+            if (output.csv != null) {
+                csv = csv == null ? output.csv : csv.merge(output.csv);
+            }
+        }
+        for (Map.Entry<String, AggregateStatistics> report : reports.entrySet()) {
+            Path file = dir.resolve(report.getKey());
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, report.getValue().renderAnalysis());
+        }
+        if (csv != null) {
+            if (csv.isEmpty()) {
+                logger.warn("There are no complete games with questionnaire, not saving a CSV file!");
+            } else {
+                Files.writeString(dir.resolve("data.csv"), csv.render());
+            }
+        }
+        for (Path shardDir : shardDirs) {
+            Path perGame = shardDir.resolve("per_game");
+            if (!Files.isDirectory(perGame)) {
+                continue;
+            }
+            Files.createDirectories(dir.resolve("per_game"));
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(perGame)) {
+                for (Path file : files) {
+                    Files.copy(file, dir.resolve("per_game").resolve(file.getFileName()),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
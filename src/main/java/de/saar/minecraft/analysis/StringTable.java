@@ -0,0 +1,144 @@
+package de.saar.minecraft.analysis;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Interns strings and hands out dense int IDs for them.  One table is shared by all games of an
+ * analysis, so repeated messages are only stored once and events can refer to them by ID.
+ *
+ * <p>The table is read for every event by every thread of an analysis, so reads do not lock:
+ * the strings and their MessageMarkers are kept in arrays that are replaced by larger copies
+ * when they are full, and a string is written into the array before its ID is handed out.
+ * Only adding a new string locks.  The markers of a string are matched when it is added.</p>
+ *
+ * <p>The first strings of a table can be external, e.g. stored in a snapshot file: they are
+ * only decoded and matched when they are first used.</p>
+ */
+public class StringTable {
+    private static final long UNKNOWN_MARKERS = -1;
+    /**
+     * Reads and writes the markers of external strings atomically, they are matched lazily
+     * without a lock.
+     */
+    private static final VarHandle MARKERS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int numExternal;
+    private final IntFunction<String> external;
+    /**
+     * The ID of null, which has no entry in the map.
+     */
+    private int nullId = -1;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] strings;
+    /**
+     * The MessageMarkers found in each string, UNKNOWN_MARKERS for external strings that
+     * were not matched yet.
+     */
+    private volatile long[] markers;
+    private volatile int size;
+
+    public StringTable() {
+        this(0, null);
+    }
+
+    /**
+     * Creates a table whose strings with IDs below numExternal are decoded by the given function
+     * on first use.  External strings are not looked up by intern, so a string that is added
+     * later gets a new ID even if it is also external.
+     */
+    StringTable(int numExternal, IntFunction<String> external) {
+        this.numExternal = numExternal;
+        this.external = external;
+        int capacity = Math.max(16, numExternal);
+        strings = new String[capacity];
+        markers = new long[capacity];
+        Arrays.fill(markers, 0, numExternal, UNKNOWN_MARKERS);
+        size = numExternal;
+    }
+
+    /**
+     * @return the ID of the given string, adding it to the table if it is new
+     */
+    public int intern(String string) {
+        if (string != null) {
+            Integer id = ids.get(string);
+            if (id != null) {
+                return id;
+            }
+        }
+        return add(string);
+    }
+
+    private synchronized int add(String string) {
+        int id = string == null ? nullId : ids.getOrDefault(string, -1);
+        if (id >= 0) {
+            return id;
+        }
+        id = size;
+        if (id == strings.length) {
+            markers = Arrays.copyOf(markers, 2 * id);
+            strings = Arrays.copyOf(strings, 2 * id);
+        }
+        markers[id] = string == null ? 0 : MarkerMatcher.MARKERS.match(string);
+        strings[id] = string;
+        size = id + 1;
+        if (string == null) {
+            nullId = id;
+        } else {
+            ids.put(string, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the ID of the given string, -1 if it is not in the table
+     */
+    public int indexOf(String string) {
+        if (string == null) {
+            synchronized (this) {
+                return nullId;
+            }
+        }
+        return ids.getOrDefault(string, -1);
+    }
+
+    /**
+     * @return the string with the given ID
+     */
+    public String get(int id) {
+        String[] current = strings;
+        String string = current[id];
+        if (string == null && id < numExternal) {
+            // strings are immutable, so they can be shared without a lock
+            string = external.apply(id);
+            current[id] = string;
+        }
+        return string;
+    }
+
+    /**
+     * @return the MessageMarkers contained in the string with the given ID.  Every string is
+     *     matched once, no matter how many events of how many games refer to it.
+     */
+    public long getMarkers(int id) {
+        long[] current = markers;
+        long found = (long) MARKERS.getOpaque(current, id);
+        if (found == UNKNOWN_MARKERS) {
+            found = MarkerMatcher.MARKERS.match(get(id));
+            MARKERS.setOpaque(current, id, found);
+        }
+        return found;
+    }
+
+    /**
+     * @return the number of distinct strings in the table
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -1,9 +1,5 @@
 package de.saar.minecraft.analysis;
 
-import static de.saar.minecraft.broker.db.Tables.GAMES;
-import static de.saar.minecraft.broker.db.Tables.GAME_LOGS;
-
-import com.google.gson.JsonParser;
 import de.bwaldvogel.liblinear.*;
 import de.saar.basic.Pair;
 import java.sql.Connection;
@@ -12,12 +8,12 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.commons.math3.stat.descriptive.UnivariateStatistic;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
 import org.apache.commons.math3.stat.descriptive.rank.Percentile;
-import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
 
@@ -41,7 +37,7 @@ public class WeightEstimator {
     
     public List<List<Pair<String[], Long>>> allData;
     
-    private final DSLContext jooq;
+    private final GameLogSource source;
     
     public static void main(String[] args) throws SQLException {
         var connStr = "jdbc:mariadb://localhost:3306/RANDOMIZEDWEIGHTS";
@@ -58,7 +54,7 @@ public class WeightEstimator {
         }
         Connection conn = DriverManager.getConnection(connStr, connUser, connPwd);
 
-        var estimator = new WeightEstimator(DSL.using(conn), 25, 75);
+        var estimator = new WeightEstimator(new JdbcGameLogSource(DSL.using(conn)), 25, 75);
         var results = estimator.predictDurationCoeffsFromAllGames();
         System.out.println("global optimum:");
         printWeightMap(results);
@@ -78,8 +74,8 @@ public class WeightEstimator {
         // estimator.sampleDurationCoeffsWithBootstrap(10000);
     }
     
-    public WeightEstimator(DSLContext jooq, int lowerPercentile, int higherPercentile) {
-        this.jooq = jooq;
+    public WeightEstimator(GameLogSource source, int lowerPercentile, int higherPercentile) {
+        this.source = source;
         this.lowerPercentile = lowerPercentile;
         this.higherPercentile = higherPercentile;
         this.allData = extractAllData();
@@ -206,66 +202,47 @@ public class WeightEstimator {
     }
     
     private List<List<Pair<String[], Long>>> extractAllData() {
-        return jooq.select(GAMES.ID)
-                .from(GAMES)
-                .fetch(GAMES.ID)
-                .stream()
-                .map(this::extractDataFromGame)
+        var gameIds = source.streamGames()
+                .map(GameMetadata::getId)
+                .collect(Collectors.toList());
+        Map<Integer, List<Pair<String[], Long>>> dataById = new ConcurrentHashMap<>();
+        source.extractEvents(gameIds, (events) -> dataById.put(events.getGameId(), extractDataFromGame(events)));
+        return gameIds.stream()
+                .map(dataById::get)
                 .collect(Collectors.toList());
     }
     
-    private List<Pair<String[], Long>> extractDataFromGame(int gameId) {
-        var instructionTimes = jooq.selectFrom(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.MESSAGE_TYPE.eq("TextMessage"))
-                .stream()
-                .map((x) -> {
-                    var text = JsonParser.parseString(x.getMessage())
-                            .getAsJsonObject()
-                            .get("text")
-                            .getAsString();
-                    return new Pair<>(text, x.getTimestamp());
-                })
-                .filter((x) -> x.left.startsWith("{"))
-                .map((x) -> new Pair<>(JsonParser.parseString(x.left).getAsJsonObject(), x.right))
-                .collect(Collectors.toList());
-
+    private List<Pair<String[], Long>> extractDataFromGame(GameEvents events) {
         List<Pair<String[], Long>> result = new ArrayList<>();
         
         String[] lastInstruction = null;
         LocalDateTime lastTime = null;
         
-        for (var instructionTime: instructionTimes) {
-            var json = instructionTime.left;
-            if (! (json.has("new") && json.get("new").getAsBoolean())) {
+        for (var instruction: events.getInstructions()) {
+            if (!instruction.isStructured() || !instruction.isNew()) {
                 continue;
             }
-            String instructionTree = json.get("tree").getAsString();
-            if (instructionTree.equals("NULL")) {
+            if (!instruction.hasTree()) {
                 // this is an instruction such as "now I will teach you how to build a wall"
                 continue;
             }
-            var currInstruction = instructionTree.split("[(),]+");
+            var currInstruction = instruction.getTreeTokens();
             if (lastTime == null) { // first instruction
-                lastTime = instructionTime.right;
+                lastTime = instruction.getTime();
                 lastInstruction = new String[currInstruction.length + 1];
                 System.arraycopy(currInstruction, 0, lastInstruction, 0, currInstruction.length);
                 lastInstruction[currInstruction.length] = FIRST_INSTRUCTION_FEATURE;
                 continue;
             }
-            result.add(new Pair<>(lastInstruction, lastTime.until(instructionTime.right, ChronoUnit.MILLIS)));
+            result.add(new Pair<>(lastInstruction, lastTime.until(instruction.getTime(), ChronoUnit.MILLIS)));
             lastInstruction = currInstruction;
-            lastTime = instructionTime.right;
+            lastTime = instruction.getTime();
         }
 
-        var successTimeR = jooq.select(GAME_LOGS.TIMESTAMP)
-                .from(GAME_LOGS)
-                .where(GAME_LOGS.GAMEID.eq(gameId))
-                .and(GAME_LOGS.MESSAGE.contains("SuccessfullyFinished"))
-                .fetchOne();
+        int success = events.indexOfMarker(MessageMarker.SUCCESSFULLY_FINISHED);
         
-        if (successTimeR != null && lastTime != null) {
-            result.add(new Pair<>(lastInstruction, lastTime.until(successTimeR.component1(), ChronoUnit.MILLIS)));
+        if (success >= 0 && lastTime != null) {
+            result.add(new Pair<>(lastInstruction, lastTime.until(events.getTime(success), ChronoUnit.MILLIS)));
         }
         return result;
     }
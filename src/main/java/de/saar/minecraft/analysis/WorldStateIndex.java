@@ -0,0 +1,162 @@
+package de.saar.minecraft.analysis;
+
+import de.saar.coli.minecraft.relationextractor.Block;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers which blocks were present in a game at a given time.  The block events are replayed
+ * once in time order, and every few block events the present blocks are stored as a
+ * checkpoint.  The state at any time is rebuilt from the nearest checkpoint before it plus
+ * the few block events after the checkpoint, instead of replaying the whole game.
+ */
+public class WorldStateIndex {
+    static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+
+    private final GameEvents events;
+    private final int interval;
+    /**
+     * The indices of the block events in time order and their timestamps.
+     */
+    private final int[] blockEvents;
+    private final long[] blockEventTimes;
+    /**
+     * checkpoints[k] holds the placing events of the blocks that are present after the first
+     * k * interval block events, in the order the blocks were placed.
+     */
+    private final int[][] checkpoints;
+
+    public WorldStateIndex(GameEvents events) {
+        this(events, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param interval the number of block events between two checkpoints
+     */
+    public WorldStateIndex(GameEvents events, int interval) {
+        this.events = events;
+        this.interval = interval;
+        int[] order = events.timeOrder();
+        int numBlockEvents = 0;
+        for (int i : order) {
+            if (isBlockEvent(i)) {
+                numBlockEvents++;
+            }
+        }
+        blockEvents = new int[numBlockEvents];
+        blockEventTimes = new long[numBlockEvents];
+        int k = 0;
+        for (int i : order) {
+            if (isBlockEvent(i)) {
+                blockEvents[k] = i;
+                blockEventTimes[k] = events.timestamps[i];
+                k++;
+            }
+        }
+        checkpoints = new int[numBlockEvents / interval + 1][];
+        checkpoints[0] = new int[0];
+        var replay = new Replay(checkpoints[0]);
+        for (k = 0; k < numBlockEvents; k++) {
+            replay.apply(blockEvents[k]);
+            if ((k + 1) % interval == 0) {
+                checkpoints[(k + 1) / interval] = replay.getPresent();
+            }
+        }
+    }
+
+    private boolean isBlockEvent(int i) {
+        return events.types[i] == EventType.BLOCK_PLACED.code
+                || events.types[i] == EventType.BLOCK_DESTROYED.code;
+    }
+
+    /**
+     * @return the number of block events strictly before the given time
+     */
+    public int countBlockEventsBefore(LocalDateTime time) {
+        long until = GameEvents.toEpochMillis(time);
+        int low = 0;
+        int high = blockEventTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blockEventTimes[mid] < until) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the indices of the block events strictly before the given time, in time order
+     */
+    public int[] getBlockEventsBefore(LocalDateTime time) {
+        return Arrays.copyOf(blockEvents, countBlockEventsBefore(time));
+    }
+
+    /**
+     * @return the blocks present just before the given time, in the order they were placed
+     */
+    public List<Block> getBlocksAt(LocalDateTime time) {
+        int numEvents = countBlockEventsBefore(time);
+        int checkpoint = numEvents / interval;
+        var replay = new Replay(checkpoints[checkpoint]);
+        for (int k = checkpoint * interval; k < numEvents; k++) {
+            replay.apply(blockEvents[k]);
+        }
+        List<Block> blocks = new ArrayList<>();
+        for (int i : replay.getPresent()) {
+            blocks.add(events.getBlock(i));
+        }
+        return blocks;
+    }
+
+    /**
+     * The blocks present during a replay, kept as the indices of their placing events.  A
+     * destroyed block removes the earliest placed block at its position, like
+     * List.remove(block) would.
+     */
+    private class Replay {
+        private int[] placed;
+        private int size;
+        private final Map<Block, ArrayDeque<Integer>> positions = new HashMap<>();
+
+        Replay(int[] checkpoint) {
+            placed = Arrays.copyOf(checkpoint, Math.max(16, checkpoint.length));
+            for (int p = 0; p < checkpoint.length; p++) {
+                positions.computeIfAbsent(events.getBlock(checkpoint[p]), (b) -> new ArrayDeque<>()).add(p);
+            }
+            size = checkpoint.length;
+        }
+
+        void apply(int i) {
+            Block block = events.getBlock(i);
+            if (events.types[i] == EventType.BLOCK_PLACED.code) {
+                if (size == placed.length) {
+                    placed = Arrays.copyOf(placed, size * 2);
+                }
+                positions.computeIfAbsent(block, (b) -> new ArrayDeque<>()).add(size);
+                placed[size++] = i;
+            } else {
+                var atPosition = positions.get(block);
+                if (atPosition != null && !atPosition.isEmpty()) {
+                    placed[atPosition.poll()] = -1;
+                }
+            }
+        }
+
+        /**
+         * @return the placing events of the present blocks
+         */
+        int[] getPresent() {
+            return Arrays.stream(placed, 0, size)
+                    .filter((i) -> i >= 0)
+                    .toArray();
+        }
+    }
+}
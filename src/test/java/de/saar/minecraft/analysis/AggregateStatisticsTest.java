@@ -0,0 +1,56 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AggregateStatisticsTest {
+    private static InMemoryGameLogSource source;
+
+    @BeforeClass
+    public static void createSource() {
+        source = TestExperiment.create();
+    }
+
+    private static List<GameInformation> games(IntPredicate include) {
+        List<GameInformation> games = new ArrayList<>();
+        for (int gameId = 1; gameId <= TestExperiment.NUM_GAMES; gameId++) {
+            if (include.test(gameId)) {
+                games.add(new GameInformation(gameId, source));
+            }
+        }
+        return games;
+    }
+
+    @Test
+    public void testMergeOfDisjointGroupsEqualsAllGames() {
+        String expected = AggregateStatistics.of(games((g) -> true), false).renderAnalysis();
+        var odd = AggregateStatistics.of(games((g) -> g % 2 == 1), false);
+        var even = AggregateStatistics.of(games((g) -> g % 2 == 0), false);
+        assertEquals(expected, even.merge(odd).renderAnalysis());
+    }
+
+    @Test
+    public void testMergeOfRanges() {
+        var all = AggregateStatistics.of(games((g) -> true), true);
+        var merged = AggregateStatistics.of(games((g) -> g > 20), true)
+                .merge(AggregateStatistics.of(games((g) -> g <= 7), true))
+                .merge(AggregateStatistics.of(games((g) -> g > 7 && g <= 20), true));
+        assertEquals(all.renderAnalysis(), merged.renderAnalysis());
+        assertEquals(all.getGameIds(), merged.getGameIds());
+        assertEquals(all.getMistakeDistribution(), merged.getMistakeDistribution());
+    }
+
+    @Test
+    public void testMergeWithEmptyGroup() {
+        String expected = AggregateStatistics.of(games((g) -> g < 10), false).renderAnalysis();
+        var empty = AggregateStatistics.of(List.of(), false);
+        assertEquals(expected, empty.merge(AggregateStatistics.of(games((g) -> g < 10), false)).renderAnalysis());
+        var games = AggregateStatistics.of(games((g) -> g < 10), false);
+        assertEquals(expected, games.merge(AggregateStatistics.of(List.of(), false)).renderAnalysis());
+    }
+}
@@ -0,0 +1,71 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExperimentAnalysis analysis;
+    private AnalysisServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Before
+    public void startServer() throws IOException {
+        var config = new AnalysisConfiguration();
+        config.setDirName(folder.getRoot().getPath());
+        analysis = new ExperimentAnalysis(config, TestExperiment.create());
+        server = new AnalysisServer(analysis, 0);
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws InterruptedException {
+        server.stop();
+        server.awaitStop();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonObject cacheMetrics() {
+        return analysis.getMetrics().toJson().getAsJsonObject("caches").getAsJsonObject("serverAnswers");
+    }
+
+    @Test
+    public void testEquivalentQueriesShareAnAnswer() throws Exception {
+        var first = get("/game?id=3");
+        assertEquals(200, first.statusCode());
+        assertEquals(first.body(), get("/game?id=03&unused=x").body());
+
+        var partial = get("/partial?scenario=bridge&onlySuccessful=true");
+        assertEquals(200, partial.statusCode());
+        assertEquals(partial.body(), get("/partial?onlySuccessful=TRUE&scenario=bridge").body());
+
+        assertEquals(2, cacheMetrics().get("hits").getAsLong());
+        assertEquals(2, cacheMetrics().get("misses").getAsLong());
+    }
+
+    @Test
+    public void testMalformedAndMissingGames() throws Exception {
+        assertEquals(400, get("/game?id=x").statusCode());
+        assertEquals(400, get("/game").statusCode());
+        assertEquals(400, get("/csv?from=2").statusCode());
+        assertEquals(404, get("/game?id=999").statusCode());
+        assertEquals(404, get("/game?id=999").statusCode());
+    }
+}
@@ -0,0 +1,53 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CsvFragmentTest {
+    private static InMemoryGameLogSource source;
+
+    @BeforeClass
+    public static void createSource() {
+        source = TestExperiment.create();
+    }
+
+    private static CsvFragment fragment(IntPredicate include) {
+        List<GameInformation> games = new ArrayList<>();
+        for (int gameId = 1; gameId <= TestExperiment.NUM_GAMES; gameId++) {
+            if (include.test(gameId)) {
+                games.add(new GameInformation(gameId, source));
+            }
+        }
+        return CsvFragment.of(games);
+    }
+
+    @Test
+    public void testMergeEqualsAllGames() {
+        String expected = fragment((g) -> true).render();
+        String merged = fragment((g) -> g % 3 == 0)
+                .merge(fragment((g) -> g % 3 == 1))
+                .merge(fragment((g) -> g % 3 == 2))
+                .render();
+        assertEquals(expected, merged);
+    }
+
+    @Test
+    public void testHeaderOfLowestGame() {
+        String expected = fragment((g) -> g >= 4).render();
+        assertEquals(expected, fragment((g) -> g >= 10).merge(fragment((g) -> g >= 4 && g < 10)).render());
+    }
+
+    @Test
+    public void testMergeWithEmptyFragment() {
+        String expected = fragment((g) -> g < 5).render();
+        assertTrue(fragment((g) -> false).isEmpty());
+        assertEquals(expected, fragment((g) -> false).merge(fragment((g) -> g < 5)).render());
+        assertEquals(expected, fragment((g) -> g < 5).merge(fragment((g) -> false)).render());
+    }
+}
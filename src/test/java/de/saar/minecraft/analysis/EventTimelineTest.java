@@ -0,0 +1,59 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class EventTimelineTest {
+    private static EventTimeline timeline(long... times) {
+        var builder = new EventTimeline.Builder();
+        for (long time : times) {
+            builder.add(time);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testBoundariesAreExcluded() {
+        var timeline = timeline(30, 10, 20, 20, 40);
+        assertEquals(5, timeline.size());
+        assertEquals(3, timeline.countBetween(10, 40));
+        assertEquals(2, timeline.countBetween(10, 30));
+        assertEquals(4, timeline.countBetween(9, 40));
+        assertEquals(5, timeline.countBetween(9, 41));
+        assertEquals(2, timeline.countBetween(19, 21));
+        assertEquals(0, timeline.countBetween(20, 20));
+        assertEquals(0, timeline.countBetween(20, 21));
+        assertEquals(0, timeline.countBetween(40, 10));
+        assertEquals(0, timeline.countBetween(41, 100));
+    }
+
+    @Test
+    public void testEmptyTimeline() {
+        var timeline = timeline();
+        assertEquals(0, timeline.size());
+        assertEquals(0, timeline.countBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRandomWindowsMatchCounting() {
+        var random = new Random(3);
+        long[] times = new long[200];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = random.nextInt(100);
+        }
+        var timeline = timeline(times);
+        for (int n = 0; n < 2000; n++) {
+            long from = random.nextInt(110) - 5;
+            long to = random.nextInt(110) - 5;
+            int expected = 0;
+            for (long time : times) {
+                if (time > from && time < to) {
+                    expected++;
+                }
+            }
+            assertEquals(from + " " + to, expected, timeline.countBetween(from, to));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExperimentSnapshotTest {
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static InMemoryGameLogSource source;
+    private static Path file;
+    private static ExperimentSnapshot snapshot;
+
+    @BeforeClass
+    public static void exportSnapshot() throws IOException {
+        source = TestExperiment.create();
+        // a game without log and questionnaire and one with a null message
+        source.addGame(TestExperiment.NUM_GAMES + 1, "house", null);
+        source.addEvent(TestExperiment.NUM_GAMES + 2, 100_000, "TextMessage", null, TestExperiment.START);
+        source.addGame(TestExperiment.NUM_GAMES + 2, "bridge", "A");
+        file = folder.getRoot().toPath().resolve("experiment.snapshot");
+        ExperimentSnapshot.export(source, file);
+        snapshot = ExperimentSnapshot.open(file);
+    }
+
+    @Test
+    public void testGames() {
+        assertEquals(source.streamGames().map(GameMetadata::getId).collect(Collectors.toList()),
+                snapshot.streamGames().map(GameMetadata::getId).collect(Collectors.toList()));
+        source.streamGames().forEach((expected) -> {
+            GameMetadata actual = snapshot.getGame(expected.getId());
+            assertEquals(expected.getScenario(), actual.getScenario());
+            assertEquals(expected.getArchitect(), actual.getArchitect());
+            assertEquals(expected.getPlayerName(), actual.getPlayerName());
+            assertEquals(expected.getClientIp(), actual.getClientIp());
+        });
+        assertNull(snapshot.getGame(-1));
+    }
+
+    @Test
+    public void testEvents() {
+        source.streamGames().forEach((game) -> {
+            GameEvents expected = source.getEvents(game.getId());
+            GameEvents actual = snapshot.getEvents(game.getId());
+            assertEquals(game.getId(), actual.getGameId());
+            assertArrayEquals(expected.ids, actual.ids);
+            assertArrayEquals(expected.types, actual.types);
+            assertArrayEquals(expected.timestamps, actual.timestamps);
+            assertArrayEquals(expected.xs, actual.xs);
+            assertArrayEquals(expected.ys, actual.ys);
+            assertArrayEquals(expected.zs, actual.zs);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getMessage(i), actual.getMessage(i));
+                assertEquals(expected.getMarkers(i), actual.getMarkers(i));
+            }
+        });
+        assertEquals(source.getLogSizes(), snapshot.getLogSizes());
+    }
+
+    @Test
+    public void testQuestionnaires() {
+        source.streamGames().forEach((game) ->
+                assertEquals(source.getQuestionnaire(game.getId()), snapshot.getQuestionnaire(game.getId())));
+    }
+
+    @Test
+    public void testSnapshotOfSnapshot() throws IOException {
+        Path copy = folder.getRoot().toPath().resolve("copy.snapshot");
+        ExperimentSnapshot.export(snapshot, copy);
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(copy));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherFilesAreRejected() throws IOException {
+        Path other = folder.newFile("other.snapshot").toPath();
+        Files.write(other, "not a snapshot, but long enough for a header".getBytes());
+        ExperimentSnapshot.open(other);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherVersionsAreRejected() throws IOException {
+        Path old = folder.newFile("old.snapshot").toPath();
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, ExperimentSnapshot.VERSION - 1);
+        Files.write(old, bytes);
+        ExperimentSnapshot.open(old);
+    }
+}
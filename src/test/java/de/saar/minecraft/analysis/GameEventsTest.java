@@ -0,0 +1,69 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class GameEventsTest {
+    private final StringTable strings = new StringTable();
+
+    private GameEvents events(long... ids) {
+        var builder = new GameEvents.Builder(1, strings);
+        for (long id : ids) {
+            builder.add(id, EventType.TEXT_MESSAGE, 1000 * id, 0, 0, 0, strings.intern("message " + id));
+        }
+        return builder.build();
+    }
+
+    private static void assertEvents(long[] expectedIds, GameEvents events) {
+        assertArrayEquals(expectedIds, events.ids);
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(1000 * events.ids[i], events.timestamps[i]);
+            assertEquals("message " + events.ids[i], events.getMessage(i));
+        }
+    }
+
+    @Test
+    public void testAfter() {
+        GameEvents events = events(2, 5, 7, 9);
+        assertSame(events, events.after(0));
+        assertSame(events, events.after(1));
+        assertEvents(new long[] {7, 9}, events.after(5));
+        assertEvents(new long[] {7, 9}, events.after(6));
+        assertEvents(new long[0], events.after(9));
+        assertEvents(new long[0], events(2).after(2));
+    }
+
+    @Test
+    public void testAppendLaterEvents() {
+        GameEvents events = events(1, 3);
+        assertEvents(new long[] {1, 3, 4, 8}, events.append(events(4, 8)));
+        assertEvents(new long[] {4, 8}, events().append(events(4, 8)));
+    }
+
+    @Test
+    public void testAppendKnownEvents() {
+        GameEvents events = events(1, 3, 5);
+        assertSame(events, events.append(events()));
+        assertSame(events, events.append(events(3, 5)));
+        assertEvents(new long[] {1, 3, 5, 6}, events.append(events(5, 6)));
+    }
+
+    @Test
+    public void testAppendLateEvents() {
+        GameEvents events = events(1, 3, 5);
+        assertEvents(new long[] {1, 2, 3, 4, 5}, events.append(events(2, 4)));
+        assertEvents(new long[] {1, 2, 3, 5, 6}, events.append(events(2, 3, 5, 6)));
+        assertSame(events, events.append(events(1, 3)));
+    }
+
+    @Test
+    public void testAppendKeepsGameAndStrings() {
+        GameEvents appended = events(1).append(events(2));
+        assertEquals(1, appended.getGameId());
+        assertSame(strings, appended.strings);
+        assertEquals(2, appended.timeOrder().length);
+    }
+}
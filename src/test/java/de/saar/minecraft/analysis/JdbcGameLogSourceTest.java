@@ -0,0 +1,77 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class JdbcGameLogSourceTest {
+    private static List<Integer> concat(List<List<Integer>> partitions) {
+        List<Integer> all = new ArrayList<>();
+        partitions.forEach(all::addAll);
+        return all;
+    }
+
+    @Test
+    public void testPartitionsAreBalancedRanges() {
+        List<Integer> gameIds = new ArrayList<>();
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (int gameId = 100; gameId > 0; gameId--) {
+            gameIds.add(gameId);
+            sizes.put(gameId, 10);
+        }
+        var partitions = JdbcGameLogSource.partition(gameIds, sizes, 4);
+        assertEquals(4, partitions.size());
+        for (List<Integer> partition : partitions) {
+            assertEquals(25, partition.size());
+        }
+        List<Integer> sorted = new ArrayList<>(gameIds);
+        sorted.sort(null);
+        assertEquals(sorted, concat(partitions));
+    }
+
+    @Test
+    public void testLargeGameClosesItsRange() {
+        Map<Integer, Integer> sizes = Map.of(1, 1, 2, 1, 3, 1000, 4, 1, 5, 1);
+        var partitions = JdbcGameLogSource.partition(List.of(1, 2, 3, 4, 5), sizes, 3);
+        assertEquals(List.of(List.of(1, 2, 3), List.of(4), List.of(5)), partitions);
+        partitions = JdbcGameLogSource.partition(List.of(1, 2, 3, 4, 5), sizes, 2);
+        assertEquals(List.of(List.of(1, 2, 3), List.of(4, 5)), partitions);
+    }
+
+    @Test
+    public void testGamesWithoutSize() {
+        var partitions = JdbcGameLogSource.partition(List.of(3, 1, 2, 2), Map.of(), 2);
+        assertEquals(List.of(1, 2, 3), concat(partitions));
+        assertTrue(JdbcGameLogSource.partition(List.of(), Map.of(), 4).isEmpty());
+    }
+
+    @Test
+    public void testRandomSizes() {
+        var random = new Random(11);
+        for (int n = 1; n <= 8; n++) {
+            List<Integer> gameIds = new ArrayList<>();
+            Map<Integer, Integer> sizes = new HashMap<>();
+            long total = 0;
+            for (int gameId = 1; gameId <= 500; gameId++) {
+                gameIds.add(gameId);
+                int size = random.nextInt(100);
+                sizes.put(gameId, size);
+                total += size;
+            }
+            var partitions = JdbcGameLogSource.partition(gameIds, sizes, n);
+            assertEquals(n, partitions.size());
+            assertEquals(gameIds, concat(partitions));
+            for (List<Integer> partition : partitions) {
+                long rows = partition.stream().mapToLong(sizes::get).sum();
+                // a range closes as soon as it reaches its share, so it exceeds it by less than one game
+                assertTrue(rows + " rows in one of " + n, rows < total / n + 100);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+public class LikertHistogramTest {
+    @Test
+    public void testMedianEqualsPercentile50() {
+        var random = new Random(7);
+        for (int n = 1; n < 500; n++) {
+            var histogram = new LikertHistogram();
+            var statistics = new DescriptiveStatistics();
+            int count = 1 + random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                int answer = 1 + random.nextInt(random.nextBoolean() ? 5 : 7);
+                histogram.add(answer);
+                statistics.addValue(answer);
+            }
+            String values = statistics.toString();
+            assertEquals(values, (int) statistics.getPercentile(50), histogram.getMedian());
+            assertEquals(values, statistics.getMean(), histogram.getMean(), 1e-9);
+            assertEquals(values, statistics.getStandardDeviation(), histogram.getStandardDeviation(), 1e-9);
+            assertEquals(values, (int) statistics.getMin(), histogram.getMinimum());
+            assertEquals(values, (int) statistics.getMax(), histogram.getMaximum());
+        }
+    }
+
+    @Test
+    public void testEvenCountRoundsTowardsZero() {
+        var histogram = new LikertHistogram();
+        histogram.add(2);
+        histogram.add(5);
+        assertEquals(3, histogram.getMedian());
+        histogram.add(5);
+        assertEquals(5, histogram.getMedian());
+    }
+
+    @Test
+    public void testMerge() {
+        var all = new LikertHistogram();
+        var first = new LikertHistogram();
+        var second = new LikertHistogram();
+        for (int answer : new int[] {1, 4, 4, 2, 5, 3, 3, 3}) {
+            all.add(answer);
+            (answer % 2 == 0 ? first : second).add(answer);
+        }
+        first.merge(second);
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getMedian(), first.getMedian());
+        assertEquals(all.getMean(), first.getMean(), 1e-9);
+        assertEquals(all.getStandardDeviation(), first.getStandardDeviation(), 1e-9);
+    }
+}
@@ -0,0 +1,63 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileTest {
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Maps a random file in windows of a few bytes, so most values cross a window.
+     */
+    @Test
+    public void testValuesAcrossWindows() throws IOException {
+        var random = new Random(13);
+        byte[] bytes = new byte[1000];
+        random.nextBytes(bytes);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        ByteBuffer expected = ByteBuffer.wrap(bytes);
+        for (long windowSize : new long[] {1, 3, 7, 64, 1000, MappedFile.WINDOW_SIZE}) {
+            MappedFile mapped = MappedFile.map(file, windowSize);
+            assertEquals(bytes.length, mapped.size());
+            for (int position = 0; position + Long.BYTES <= bytes.length; position += 5) {
+                assertEquals(expected.getInt(position), mapped.getInt(position));
+                assertEquals(expected.getLong(position), mapped.getLong(position));
+            }
+            for (int n = 0; n < 200; n++) {
+                int count = random.nextInt(20);
+                int position = random.nextInt(bytes.length - Long.BYTES * count + 1);
+                long[] longs = new long[count];
+                ByteBuffer.wrap(bytes, position, Long.BYTES * count).asLongBuffer().get(longs);
+                assertArrayEquals(longs, mapped.getLongs(position, count));
+                int[] ints = new int[count];
+                ByteBuffer.wrap(bytes, position, Integer.BYTES * count).asIntBuffer().get(ints);
+                assertArrayEquals(ints, mapped.getInts(position, count));
+                byte[] part = new byte[count];
+                System.arraycopy(bytes, position, part, 0, count);
+                assertArrayEquals(part, mapped.getBytes(position, count));
+            }
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        byte[] bytes = "abc Grüße ✓ end".getBytes(StandardCharsets.UTF_8);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        MappedFile mapped = MappedFile.map(file, 2);
+        assertEquals("abc Grüße ✓ end", mapped.getString(0, bytes.length));
+        assertEquals("", mapped.getString(3, 0));
+    }
+}
@@ -0,0 +1,81 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+public class MarkerMatcherTest {
+    /**
+     * @return the markers found by String.contains, as the analysis did before MarkerMatcher
+     */
+    private static long matchNaively(String text) {
+        long markers = 0;
+        for (MessageMarker marker : MessageMarker.values()) {
+            boolean found = marker.ignoreCase
+                    ? text.toLowerCase(Locale.ROOT).contains(marker.phrase.toLowerCase(Locale.ROOT))
+                    : text.contains(marker.phrase);
+            if (found) {
+                markers |= marker.bit();
+            }
+        }
+        return markers;
+    }
+
+    @Test
+    public void testEveryPhraseIsFound() {
+        for (MessageMarker marker : MessageMarker.values()) {
+            long markers = MarkerMatcher.MARKERS.match("xx " + marker.phrase + " yy");
+            assertTrue(marker.name(), marker.in(markers));
+        }
+    }
+
+    @Test
+    public void testOverlappingPhrases() {
+        long markers = MarkerMatcher.MARKERS.match("Congratulations, you are done building a bridge");
+        assertTrue(MessageMarker.CONGRATULATIONS.in(markers));
+        assertTrue(MessageMarker.DONE_BUILDING.in(markers));
+        markers = MarkerMatcher.MARKERS.match("Not there! please remove that block again");
+        assertTrue(MessageMarker.NOT_THERE.in(markers));
+        assertTrue(MessageMarker.WRONG_BLOCK.in(markers));
+        markers = MarkerMatcher.MARKERS.match("now I will teach you how to build a floor");
+        assertTrue(MessageMarker.TEACH.in(markers));
+        assertTrue(MessageMarker.TEACH_YOU.in(markers));
+        assertTrue(MessageMarker.A_FLOOR.in(markers));
+    }
+
+    @Test
+    public void testCase() {
+        long markers = MarkerMatcher.MARKERS.match("NOW I WILL TEACH YOU HOW TO BUILD A WALL");
+        assertTrue(MessageMarker.TEACH_YOU.in(markers));
+        assertTrue(MessageMarker.A_WALL.in(markers));
+        assertFalse(MessageMarker.TEACH.in(markers));
+        assertFalse(MessageMarker.GREAT.in(MarkerMatcher.MARKERS.match("great! now put a block")));
+        assertEquals(0, MarkerMatcher.MARKERS.match(""));
+    }
+
+    @Test
+    public void testRandomMessagesMatchContains() {
+        var random = new Random(42);
+        MessageMarker[] markers = MessageMarker.values();
+        String[] noise = {" ", "x", "!", "\"", "\\", "Ä", "é", "\n", "gre", "Con", "tea"};
+        for (int n = 0; n < 20000; n++) {
+            var text = new StringBuilder();
+            int parts = random.nextInt(6);
+            for (int p = 0; p < parts; p++) {
+                String part = random.nextBoolean()
+                        ? markers[random.nextInt(markers.length)].phrase
+                        : noise[random.nextInt(noise.length)];
+                if (part.length() > 1 && random.nextInt(4) == 0) {
+                    part = part.substring(random.nextInt(part.length()));
+                }
+                text.append(random.nextInt(5) == 0 ? part.toUpperCase(Locale.ROOT) : part);
+            }
+            String message = text.toString();
+            assertEquals(message, matchNaively(message), MarkerMatcher.MARKERS.match(message));
+        }
+    }
+}
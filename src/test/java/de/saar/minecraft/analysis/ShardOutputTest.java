@@ -0,0 +1,94 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardOutputTest {
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static InMemoryGameLogSource source;
+    private static Map<String, String> singleRun;
+
+    @BeforeClass
+    public static void analyzeUnsharded() throws IOException {
+        source = TestExperiment.create();
+        singleRun = analyze(null, folder.newFolder("single"));
+    }
+
+    private static Map<String, String> analyze(String shard, File dir) throws IOException {
+        var config = new AnalysisConfiguration();
+        config.setDirName(dir.getPath());
+        config.setShard(shard);
+        new ExperimentAnalysis(config, source).makeAnalysis();
+        return TestExperiment.readFiles(dir.toPath());
+    }
+
+    private static Map<String, String> analyzeSharded(int numShards) throws IOException {
+        File dir = folder.newFolder("sharded-" + numShards);
+        for (int k = 1; k <= numShards; k++) {
+            analyze(k + "/" + numShards, dir);
+        }
+        ShardOutput.merge(dir.toPath());
+        return TestExperiment.readFiles(dir.toPath());
+    }
+
+    private static void assertSameReports(Map<String, String> expected, Map<String, String> actual) {
+        assertFalse(expected.isEmpty());
+        for (var file : expected.entrySet()) {
+            String name = file.getKey();
+            if (name.startsWith("per_scenario") || name.startsWith("per_architect") || name.equals("data.csv")) {
+                assertEquals(name, file.getValue(), actual.get(name));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleShardMatchesSingleRun() throws IOException {
+        assertSameReports(singleRun, analyzeSharded(1));
+    }
+
+    @Test
+    public void testMergedShardsMatchSingleRun() throws IOException {
+        for (int numShards : new int[] {2, 3, 5}) {
+            assertSameReports(singleRun, analyzeSharded(numShards));
+        }
+    }
+
+    @Test
+    public void testMoreShardsThanGames() throws IOException {
+        assertSameReports(singleRun, analyzeSharded(TestExperiment.NUM_GAMES + 3));
+    }
+
+    @Test
+    public void testShardsWriteOnlyTheirGames() throws IOException {
+        File dir = folder.newFolder("games");
+        analyze("1/2", dir);
+        analyze("2/2", dir);
+        int games = 0;
+        for (String shard : new String[] {"shard-1-of-2", "shard-2-of-2"}) {
+            Path gameDir = dir.toPath().resolve(shard).resolve("per_game");
+            int n = gameDir.toFile().list().length;
+            assertTrue(shard + " has no games", n > 0);
+            games += n;
+        }
+        assertEquals(TestExperiment.NUM_GAMES, games);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMergeFailsIfShardIsMissing() throws IOException {
+        File dir = folder.newFolder("missing");
+        analyze("1/2", dir);
+        ShardOutput.merge(dir.toPath());
+    }
+}
@@ -0,0 +1,75 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+public class ShardTest {
+    @Test
+    public void testParse() {
+        Shard shard = Shard.parse(" 2 / 4 ");
+        assertEquals(2, shard.getIndex());
+        assertEquals(4, shard.getCount());
+        assertEquals("shard-2-of-4", shard.getDirectoryName());
+        assertFalse(shard.isLast());
+        assertTrue(Shard.parse("4/4").isLast());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsMissingCount() {
+        Shard.parse("2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsIndexAboveCount() {
+        Shard.parse("5/4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsZeroIndex() {
+        Shard.parse("0/4");
+    }
+
+    @Test
+    public void testShardsAreDisjointRanges() {
+        List<Integer> gameIds = new ArrayList<>();
+        Map<Integer, Integer> logSizes = new HashMap<>();
+        for (int gameId = 1; gameId <= 100; gameId++) {
+            gameIds.add(gameId);
+            if (gameId % 10 != 0) {
+                logSizes.put(gameId, gameId < 50 ? 100 : 10);
+            }
+        }
+        for (int count = 1; count <= 7; count++) {
+            Set<Integer> seen = new HashSet<>();
+            int previousLast = 0;
+            for (int k = 1; k <= count; k++) {
+                Set<Integer> games = new Shard(k, count).select(gameIds, logSizes);
+                assertFalse(k + "/" + count + " is empty", games.isEmpty());
+                int first = games.stream().mapToInt(Integer::intValue).min().getAsInt();
+                int last = games.stream().mapToInt(Integer::intValue).max().getAsInt();
+                assertEquals(previousLast + 1, first);
+                assertEquals(last - first + 1, games.size());
+                previousLast = last;
+                seen.addAll(games);
+            }
+            assertEquals(new HashSet<>(gameIds), seen);
+        }
+    }
+
+    @Test
+    public void testGamesWithoutLogsAreSpread() {
+        List<Integer> gameIds = List.of(1, 2, 3, 4, 5, 6);
+        assertEquals(Set.of(1, 2), new Shard(1, 3).select(gameIds, Map.of()));
+        assertEquals(Set.of(5, 6), new Shard(3, 3).select(gameIds, Map.of()));
+        assertEquals(Set.of(), new Shard(4, 4).select(List.of(1, 2), Map.of(1, 5, 2, 5)));
+    }
+}
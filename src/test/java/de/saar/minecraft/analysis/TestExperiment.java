@@ -0,0 +1,166 @@
+package de.saar.minecraft.analysis;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds an InMemoryGameLogSource with bridge games as the broker logs them: instructions,
+ * placed and destroyed blocks, mistakes, successful and aborted games and questionnaires.
+ */
+class TestExperiment {
+    static final int NUM_GAMES = 30;
+    static final LocalDateTime START = LocalDateTime.of(2020, 6, 15, 11, 0, 0);
+    private static final String[] ARCHITECTS = {"A", "B", "C"};
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    final InMemoryGameLogSource source;
+    private long nextLogId = 1;
+    private final Set<Long> skippedLogIds = new HashSet<>();
+
+    TestExperiment(InMemoryGameLogSource source) {
+        this.source = source;
+    }
+
+    /**
+     * @return a source with NUM_GAMES games of different architects, speeds and outcomes
+     */
+    static InMemoryGameLogSource create() {
+        var experiment = new TestExperiment(new InMemoryGameLogSource());
+        for (int gameId = 1; gameId <= NUM_GAMES; gameId++) {
+            experiment.addGame(gameId);
+        }
+        return experiment.source;
+    }
+
+    /**
+     * Adds a complete game, every fourth game is aborted and every seventh has no architect.
+     */
+    void addGame(int gameId) {
+        source.addGame(gameId, "bridge", gameId % 7 == 0 ? null : ARCHITECTS[gameId % 3]);
+        addLog(gameId, gameId % 4 != 0, 1 + gameId % 5, gameId % 3 == 1);
+    }
+
+    /**
+     * Adds the GAME_LOGS and QUESTIONNAIRES rows of a game.
+     *
+     * @param speed the seconds between an instruction and the block event that follows it
+     * @param teach whether the architect teaches the floor first
+     */
+    void addLog(int gameId, boolean success, int speed, boolean teach) {
+        int t = 0;
+        addEvent(gameId, "TextMessage", text(gameId, "Welcome! Please build a bridge"), t += 1);
+        if (teach) {
+            addEvent(gameId, "TextMessage",
+                    instruction(gameId, "now I will teach you how to build a floor", true, "NULL"), t += 1);
+        }
+        addEvent(gameId, "TextMessage",
+                instruction(gameId, "place a block on the left, please", true, "(place,b1)"), t += 1);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 1, 66, 1), t += speed);
+        addEvent(gameId, "TextMessage",
+                instruction(gameId, "Great! now put a block right of it", true, "(place,b2,right)"), t += 1);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 5, 5, 5), t += speed);
+        addEvent(gameId, "TextMessage", text(gameId, "Not there! please remove that block again"), t += 1);
+        addEvent(gameId, "BlockDestroyedMessage", block(gameId, 5, 5, 5), t += speed);
+        addEvent(gameId, "TextMessage",
+                instruction(gameId, "Great! now put a block right of it", false, "(place,b2,right)"), t += 1);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 2, 66, 1), t += speed);
+        addEvent(gameId, "TextMessage",
+                instruction(gameId, "Great! now build a railing", true, "(railing,r1)"), t += 1);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 1, 67, 1), t += speed);
+        if (!success) {
+            addEvent(gameId, "GameStatus", gameState(gameId, "GameAborted"), t += 1);
+            return;
+        }
+        addEvent(gameId, "TextMessage",
+                instruction(gameId, "Great! now build a another railing", true, "(railing,r2)"), t += 1);
+        addEvent(gameId, "BlockDestroyedMessage", block(gameId, 1, 67, 1), t += speed);
+        addEvent(gameId, "TextMessage", text(gameId, "Please add this block again."), t += 1);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 1, 67, 1), t += speed);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 2, 67, 1), t += speed);
+        addEvent(gameId, "TextMessage", text(gameId, "Congratulations, you are done building a bridge"), t += 1);
+        addEvent(gameId, "GameStatus", gameState(gameId, "SuccessfullyFinished"), t += 1);
+        addEvent(gameId, "BlockPlacedMessage", block(gameId, 9, 9, 9), t + 10);
+        addQuestionnaire(gameId);
+    }
+
+    void addQuestionnaire(int gameId) {
+        source.addAnswer(gameId, "How clear were the instructions?", String.valueOf(1 + gameId % 5));
+        source.addAnswer(gameId, "Did you have fun?", String.valueOf(1 + (gameId * 3) % 5));
+        source.addAnswer(gameId, "Comments", "game " + gameId + ", fine");
+        source.addAnswer(gameId, "Empty", "");
+    }
+
+    /**
+     * Adds a log row with the next log ID, the games are 1000 seconds apart.
+     */
+    void addEvent(int gameId, String messageType, String message, int second) {
+        while (skippedLogIds.contains(nextLogId)) {
+            nextLogId++;
+        }
+        source.addEvent(gameId, nextLogId++, messageType, message,
+                START.plusSeconds(gameId * 1000L + second).plusNanos(gameId * 7_000_000L));
+    }
+
+    long getLastLogId() {
+        return nextLogId - 1;
+    }
+
+    /**
+     * Leaves out the next log IDs, e.g. for rows whose transaction commits later.
+     */
+    void skipLogIds(int n) {
+        nextLogId += n;
+    }
+
+    /**
+     * Leaves out the given log ID when it comes up, e.g. for a row in the middle of a game
+     * whose transaction commits later.
+     */
+    void skipLogId(long id) {
+        skippedLogIds.add(id);
+    }
+
+    static String text(int gameId, String text) {
+        return "{\n  \"gameId\": " + gameId + ",\n  \"text\": " + GSON.toJson(text) + "\n}";
+    }
+
+    static String instruction(int gameId, String message, boolean isNew, String tree) {
+        return text(gameId, "{\"message\":\"" + message + "\",\"new\":" + isNew + ",\"tree\":\"" + tree + "\"}");
+    }
+
+    static String block(int gameId, int x, int y, int z) {
+        return "{\n  \"gameId\": " + gameId + ",\n  \"x\": " + x + ",\n  \"y\": " + y + ",\n  \"z\": " + z
+                + ",\n  \"type\": 1\n}";
+    }
+
+    static String gameState(int gameId, String state) {
+        return "{\n  \"gameId\": " + gameId + ",\n  \"newGameState\": \"" + state + "\"\n}";
+    }
+
+    /**
+     * @return the content of every file below the directory by relative path, without the
+     *     directories of shards
+     */
+    static Map<String, String> readFiles(Path dir) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                String name = dir.relativize(path).toString();
+                if (!name.startsWith("shard-")) {
+                    files.put(name, Files.readString(path));
+                }
+            }
+        }
+        return files;
+    }
+}
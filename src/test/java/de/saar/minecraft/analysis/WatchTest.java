@@ -0,0 +1,135 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WatchTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestExperiment experiment;
+    /**
+     * A log ID in the middle of game 10 that is left out, see testRowThatCommitsLateInsideAGame.
+     */
+    private long gapInGame10;
+    private File watchDir;
+    private ExperimentAnalysis analysis;
+
+    @Before
+    public void analyzeFirstGames() throws IOException {
+        experiment = new TestExperiment(new InMemoryGameLogSource());
+        for (int gameId = 1; gameId <= 9; gameId++) {
+            experiment.addGame(gameId);
+        }
+        // game 10 is aborted, so its log pass continues with new rows instead of starting over
+        gapInGame10 = experiment.getLastLogId() + 6;
+        experiment.skipLogId(gapInGame10);
+        experiment.source.addGame(10, "bridge", "B");
+        experiment.addLog(10, false, 2, false);
+        watchDir = folder.newFolder("watch");
+        analysis = new ExperimentAnalysis(config(watchDir), experiment.source);
+        analysis.poll();
+        analysis.makeAnalysis();
+    }
+
+    private static AnalysisConfiguration config(File dir) {
+        var config = new AnalysisConfiguration();
+        config.setDirName(dir.getPath());
+        return config;
+    }
+
+    /**
+     * @return the reports a full analysis of the source writes now
+     */
+    private Map<String, String> analyzeFully() throws IOException {
+        File fullDir = folder.newFolder();
+        new ExperimentAnalysis(config(fullDir), experiment.source).makeAnalysis();
+        Map<String, String> reports = TestExperiment.readFiles(fullDir.toPath());
+        assertFalse(reports.isEmpty());
+        return reports;
+    }
+
+    private void assertReportsAreFresh() throws IOException {
+        assertEquals(analyzeFully(), TestExperiment.readFiles(watchDir.toPath()));
+    }
+
+    @Test
+    public void testNothingNew() throws IOException {
+        assertEquals(List.of(), analysis.poll());
+        assertReportsAreFresh();
+    }
+
+    @Test
+    public void testNewGames() throws IOException {
+        experiment.addGame(11);
+        experiment.addGame(12);
+        assertEquals(List.of(11, 12), analysis.poll());
+        assertReportsAreFresh();
+        assertEquals(List.of(), analysis.poll());
+    }
+
+    @Test
+    public void testQuestionnaireAfterLastLogRow() throws IOException {
+        // game 4 was aborted, so it has no questionnaire yet
+        experiment.addQuestionnaire(4);
+        assertEquals(List.of(4), analysis.poll());
+        assertReportsAreFresh();
+        assertEquals(List.of(), analysis.poll());
+    }
+
+    @Test
+    public void testRowThatCommitsLate() throws IOException {
+        final long lateId = experiment.getLastLogId() + 1;
+        experiment.skipLogIds(1);
+        experiment.addGame(11);
+        assertEquals(List.of(11), analysis.poll());
+        experiment.source.addEvent(10, lateId, "TextMessage", TestExperiment.text(10, "Please hurry"),
+                TestExperiment.START.plusSeconds(10_500));
+        assertEquals(List.of(10), analysis.poll());
+        assertReportsAreFresh();
+        assertEquals(List.of(), analysis.poll());
+    }
+
+    @Test
+    public void testRowThatCommitsLateInsideAGame() throws IOException {
+        // between the fifth row of game 10 at second 7 and the sixth at second 8
+        experiment.source.addEvent(10, gapInGame10, "TextMessage",
+                TestExperiment.text(10, "Not there! please remove that block again"),
+                TestExperiment.START.plusSeconds(10_007).plusNanos(500_000_000));
+        assertEquals(List.of(10), analysis.poll());
+        assertReportsAreFresh();
+        assertEquals(List.of(), analysis.poll());
+    }
+
+    @Test(timeout = 20_000)
+    public void testWatchUntilStopped() throws Exception {
+        var watching = new Thread(() -> {
+            try {
+                analysis.watch(Duration.ofMillis(10));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        watching.start();
+        experiment.addGame(11);
+        experiment.addQuestionnaire(8);
+        Map<String, String> expected = analyzeFully();
+        while (!expected.equals(TestExperiment.readFiles(watchDir.toPath()))) {
+            Thread.sleep(10);
+        }
+        analysis.stopWatching();
+        watching.join();
+        assertReportsAreFresh();
+    }
+}
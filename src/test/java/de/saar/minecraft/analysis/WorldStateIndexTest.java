@@ -0,0 +1,83 @@
+package de.saar.minecraft.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import de.saar.coli.minecraft.relationextractor.Block;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class WorldStateIndexTest {
+    /**
+     * @return a game with random block events and messages, whose timestamps are not in ID
+     *     order and partly equal
+     */
+    private static GameEvents randomGame(Random random, int size) {
+        var strings = new StringTable();
+        var builder = new GameEvents.Builder(1, strings);
+        for (int id = 1; id <= size; id++) {
+            long time = 1000L * random.nextInt(size / 2 + 1);
+            int kind = random.nextInt(5);
+            if (kind == 0) {
+                builder.add(id, EventType.TEXT_MESSAGE, time, 0, 0, 0, strings.intern("message " + id));
+            } else {
+                EventType type = kind < 3 ? EventType.BLOCK_PLACED : EventType.BLOCK_DESTROYED;
+                builder.add(id, type, time, random.nextInt(3), 66, random.nextInt(3), GameEvents.NO_MESSAGE);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the blocks before the given time by replaying the whole game
+     */
+    private static List<Block> replay(GameEvents events, long until) {
+        List<Block> present = new ArrayList<>();
+        for (int i : events.timeOrder()) {
+            if (events.timestamps[i] >= until) {
+                break;
+            }
+            if (events.getType(i) == EventType.BLOCK_PLACED) {
+                present.add(events.getBlock(i));
+            } else if (events.getType(i) == EventType.BLOCK_DESTROYED) {
+                present.remove(events.getBlock(i));
+            }
+        }
+        return present;
+    }
+
+    @Test
+    public void testBlocksAtMatchReplay() {
+        var random = new Random(5);
+        for (int size : new int[] {0, 1, 10, 200}) {
+            GameEvents events = randomGame(random, size);
+            for (int interval : new int[] {1, 2, 3, 7, WorldStateIndex.DEFAULT_CHECKPOINT_INTERVAL}) {
+                var index = new WorldStateIndex(events, interval);
+                for (long time = -1000; time <= 1000L * (size / 2 + 2); time += 500) {
+                    LocalDateTime at = GameEvents.toLocalDateTime(time);
+                    assertEquals(size + "/" + interval + " at " + time, replay(events, time), index.getBlocksAt(at));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBlockEventsBefore() {
+        GameEvents events = randomGame(new Random(9), 100);
+        var index = new WorldStateIndex(events);
+        for (long time = 0; time <= 51000; time += 1000) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i : events.timeOrder()) {
+                if (events.timestamps[i] < time && events.getType(i).isBlockEvent()) {
+                    expected.add(i);
+                }
+            }
+            int[] actual = index.getBlockEventsBefore(GameEvents.toLocalDateTime(time));
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), actual);
+            assertEquals(expected.size(), index.countBlockEventsBefore(GameEvents.toLocalDateTime(time)));
+        }
+    }
+}